@@ -0,0 +1,60 @@
+package tune.the.code.benchmark;
+
+import config.Config;
+import config.GeneratorConfig;
+import dataprovider.DataSet;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+
+/**
+ * {@link DataSet} can only be initialized once per JVM. JMH forks a fresh JVM per parameter combination, so a
+ * benchmark state just has to make sure it asks for the same size on every setup within one fork.
+ *
+ * @since 18.10.2026
+ */
+final class BenchmarkData {
+
+    private static String initializedSize;
+
+    private BenchmarkData() {
+    }
+
+    static synchronized void init(String size) {
+        if (initializedSize == null) {
+            DataSet.init(config(size));
+            initializedSize = size;
+        } else if (!initializedSize.equals(size)) {
+            throw new IllegalStateException("DataSet already initialized with " + initializedSize);
+        }
+    }
+
+    private static GeneratorConfig config(String size) {
+        switch (size) {
+            case "MINI":
+                return Config.DATA_SET_SIZE_MINI;
+            case "MEDIUM":
+                return Config.DATA_SET_SIZE_MEDIUM;
+            case "CHALLENGE":
+                return Config.DATA_SET_SIZE_CHALLENGE;
+            case "LARGE":
+                return new GeneratorConfig(100, 50_000, 200_000, 0.6);
+            default:
+                throw new IllegalArgumentException("Unknown data set size " + size);
+        }
+    }
+
+    /**
+     * Reads a provider's backing map without paying the simulated latency of its accessors.
+     */
+    @SuppressWarnings("unchecked")
+    static <V> Map<Integer, V> providerMap(Class<?> provider, String fieldName) {
+        try {
+            Field f = provider.getDeclaredField(fieldName);
+            f.setAccessible(true);
+            return (Map<Integer, V>) f.get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package tune.the.code.benchmark;
+
+import config.GeneratorConfig;
+import datamodel.Bank;
+import datamodel.BankAccount;
+import datamodel.Contract;
+import dataprovider.BankAccountProvider;
+import dataprovider.BankProvider;
+import dataprovider.ContractProvider;
+import dataprovider.DataSet;
+import tune.the.code.v2.ContractStore;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the provider object model with {@link ContractStore}, reported per million contracts:
+ * <ul>
+ * <li>retained heap after a full GC</li>
+ * <li>duration of a full GC while the model is live, which grows with the number of objects to trace</li>
+ * <li>bytes allocated while resolving every contract's account and bank</li>
+ * </ul>
+ * Run with a fixed heap to keep the numbers comparable, e.g.
+ * {@code java -Xms4g -Xmx4g -cp target/benchmarks.jar:src/main/resources/inkasso-system.jar
+ * tune.the.code.benchmark.ContractStoreFootprint 1000000}
+ *
+ * @since 18.10.2026
+ */
+public final class ContractStoreFootprint {
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    private ContractStoreFootprint() {
+    }
+
+    public static void main(String[] args) {
+        int contractCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        double perMillion = 1_000_000.0 / contractCount;
+
+        long baseline = usedHeapAfterGc();
+        DataSet.init(new GeneratorConfig(100, Math.max(1, contractCount / 10), contractCount, 0.6));
+        Map<Integer, Contract> contractMap = BenchmarkData.providerMap(ContractProvider.class, "CONTRACTS");
+        Map<Integer, BankAccount> accountMap = BenchmarkData.providerMap(BankAccountProvider.class, "ACCOUNTS");
+        Map<Integer, Bank> bankMap = BenchmarkData.providerMap(BankProvider.class, "BANKS");
+        List<Contract> contracts = new ArrayList<>(contractMap.values());
+        long objectModelBytes = usedHeapAfterGc() - baseline;
+        long objectModelGcMillis = fullGcMillis();
+        long objectModelAllocated = allocatedBytes(() -> {
+            long sum = 0;
+            for (Contract contract : contracts) {
+                BankAccount account = accountMap.get(contract.getBankAccountId());
+                if (account != null) {
+                    Bank bank = bankMap.get(account.getBankId());
+                    sum += bank == null ? 0 : bank.getId();
+                }
+            }
+            return sum;
+        });
+
+        ContractStore store = ContractStore.build(contracts, accountMap.values(), bankMap.values());
+        long storeBytes = usedHeapAfterGc() - baseline - objectModelBytes;
+        long storeAllocated = allocatedBytes(() -> {
+            long sum = 0;
+            for (int c = 0; c < store.contractCount(); c++) {
+                int a = store.accountIndexOfContract(c);
+                if (a != ContractStore.NOT_FOUND) {
+                    Bank bank = store.bankOfAccount(a);
+                    sum += bank == null ? 0 : bank.getId();
+                }
+            }
+            return sum;
+        });
+        // drop the object model, only the store stays live
+        contracts.clear();
+        contractMap.clear();
+        accountMap.clear();
+        long storeGcMillis = fullGcMillis();
+
+        System.out.printf("%d contracts, %d accounts, %d distinct names%n", store.contractCount(),
+                          store.accountCount(), store.nameCount());
+        System.out.printf("%-14s %16s %16s %20s%n", "per 1M", "retained bytes", "full GC ms", "allocated bytes");
+        System.out.printf("%-14s %16.0f %16.1f %20.0f%n", "object model", objectModelBytes * perMillion,
+                          objectModelGcMillis * perMillion, objectModelAllocated * perMillion);
+        System.out.printf("%-14s %16.0f %16.1f %20.0f%n", "ContractStore", storeBytes * perMillion,
+                          storeGcMillis * perMillion, storeAllocated * perMillion);
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long fullGcMillis() {
+        long before = gcMillis();
+        System.gc();
+        return gcMillis() - before;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private interface Pass {
+        long run();
+    }
+
+    private static long allocatedBytes(Pass pass) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        // warm up, so that class loading and JIT do not show up as allocations
+        long checksum = pass.run();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        checksum += pass.run();
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        if (checksum == 42) {
+            System.out.println();
+        }
+        return allocated;
+    }
+}
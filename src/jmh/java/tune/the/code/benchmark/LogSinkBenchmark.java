@@ -0,0 +1,69 @@
+package tune.the.code.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import tune.the.code.v2.LogSink;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Producer-side cost of logging a confirmation line from four threads at once: a synchronized {@link PrintStream}
+ * as used by {@code System.out}, compared to {@link LogSink}. Both write to /dev/null. The sink drops and counts
+ * lines once its buffer is full, so the numbers show the hand-off cost and not the writer's throughput; the number of
+ * dropped lines is printed at the end of the trial.
+ *
+ * @since 18.10.2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class LogSinkBenchmark {
+
+    private static final String DEV_NULL = "/dev/null";
+
+    private PrintStream printStream;
+    private LogSink logSink;
+
+    @Setup
+    public void setUp() throws IOException {
+        printStream = new PrintStream(new FileOutputStream(DEV_NULL), true);
+        logSink = LogSink.file(Paths.get(DEV_NULL), LogSink.DEFAULT_CAPACITY, LogSink.OverflowPolicy.COUNT);
+    }
+
+    @TearDown
+    public void tearDown() {
+        printStream.close();
+        logSink.close();
+        System.out.println("LogSink dropped " + logSink.getDroppedCount() + " lines");
+    }
+
+    @Benchmark
+    public void printStream() {
+        printStream.println("Printed confirmation for contract holder '" + "Günther,Andreas" + "', account "
+                                    + 12345678 + " at " + "XYZ");
+    }
+
+    @Benchmark
+    public void logSink() {
+        logSink.logConfirmation("Günther,Andreas", 12345678, "XYZ");
+    }
+}
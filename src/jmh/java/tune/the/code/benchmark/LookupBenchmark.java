@@ -0,0 +1,120 @@
+package tune.the.code.benchmark;
+
+import datamodel.Bank;
+import datamodel.BankAccount;
+import datamodel.Contract;
+import dataprovider.BankAccountProvider;
+import dataprovider.BankProvider;
+import dataprovider.ContractProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tune.the.code.v2.ContractStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Contract -> account -> bank resolution as done by the batch implementations, one contract per operation:
+ * <ul>
+ * <li>linear scan over the provider lists (v1)</li>
+ * <li>{@link java.util.HashMap} built from the provider lists (v2, honest)</li>
+ * <li>the providers' own maps read via reflection (v2, dark side)</li>
+ * <li>the pre-resolved join of a {@link ContractStore}</li>
+ * </ul>
+ *
+ * @since 18.10.2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LookupBenchmark {
+
+    @Param({"MEDIUM", "CHALLENGE"})
+    public String dataSetSize;
+
+    private List<Contract> contracts;
+    private List<BankAccount> accountList;
+    private List<Bank> bankList;
+    private Map<Integer, BankAccount> accountMap;
+    private Map<Integer, Bank> bankMap;
+    private Map<Integer, BankAccount> accountSnapshot;
+    private Map<Integer, Bank> bankSnapshot;
+    private ContractStore store;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData.init(dataSetSize);
+        contracts = new ArrayList<>(BenchmarkData.<Contract>providerMap(ContractProvider.class, "CONTRACTS").values());
+        accountList = BankAccountProvider.getAccounts();
+        bankList = BankProvider.getBanks();
+        accountMap = accountList.stream().collect(Collectors.toMap(BankAccount::getId, Function.identity()));
+        bankMap = bankList.stream().collect(Collectors.toMap(Bank::getId, Function.identity()));
+        accountSnapshot = BenchmarkData.providerMap(BankAccountProvider.class, "ACCOUNTS");
+        bankSnapshot = BenchmarkData.providerMap(BankProvider.class, "BANKS");
+        store = ContractStore.build(contracts, accountList, bankList);
+    }
+
+    private Contract nextContract() {
+        Contract contract = contracts.get(next);
+        next = next + 1 == contracts.size() ? 0 : next + 1;
+        return contract;
+    }
+
+    @Benchmark
+    public Bank linearScan() {
+        Contract contract = nextContract();
+        BankAccount bankAccountForContract = null;
+        for (BankAccount bankAccount : accountList) {
+            if (contract.getBankAccountId() != null
+                    && contract.getBankAccountId().intValue() == bankAccount.getId()) {
+                bankAccountForContract = bankAccount;
+            }
+        }
+        if (bankAccountForContract == null) {
+            return null;
+        }
+        for (Bank bank : bankList) {
+            if (bank.getId() == bankAccountForContract.getBankId()) {
+                return bank;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Bank mapLookup() {
+        BankAccount bankAccount = accountMap.get(nextContract().getBankAccountId());
+        return bankAccount == null ? null : bankMap.get(bankAccount.getBankId());
+    }
+
+    @Benchmark
+    public Bank columnar() {
+        int c = next;
+        next = next + 1 == contracts.size() ? 0 : next + 1;
+        int accountIndex = store.accountIndexOfContract(c);
+        return accountIndex == ContractStore.NOT_FOUND ? null : store.bankOfAccount(accountIndex);
+    }
+
+    @Benchmark
+    public Bank reflectionSnapshot() {
+        BankAccount bankAccount = accountSnapshot.get(nextContract().getBankAccountId());
+        return bankAccount == null ? null : bankSnapshot.get(bankAccount.getBankId());
+    }
+}
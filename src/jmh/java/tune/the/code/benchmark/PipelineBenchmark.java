@@ -0,0 +1,105 @@
+package tune.the.code.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tune.the.code.v2.BatchMetrics;
+import tune.the.code.v2.ContractStore;
+import tune.the.code.v2.ExecutionBackend;
+import tune.the.code.v2.InkassoBatch;
+import tune.the.code.v2.InkassoService;
+import tune.the.code.v2.MessageQueue;
+import tune.the.code.v2.PrimitivePrint;
+import tune.the.code.v2.Print;
+import tune.the.code.v2.PrintInputData;
+import tune.the.code.v2.PrintRequestChannel;
+import tune.the.code.v2.PrintService;
+import tune.the.code.v2.ProviderCaches;
+import tune.the.code.v2.WaitStrategy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One complete v2 batch per operation against zero-latency in-process inkasso and print systems, so the result only
+ * reflects the pipeline's own CPU cost. The provider caches are warmed up once per trial, so the providers' simulated
+ * latency is not part of the measurement either.
+ *
+ * @since 18.10.2026
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+
+    static final InkassoService NO_OP_INKASSO = bankAccount -> true;
+    static final PrintService NO_OP_PRINT = (bankName, bankAccount, policyHolderName) -> true;
+
+    @Param({"CHALLENGE", "LARGE"})
+    public String dataSetSize;
+
+    private ProviderCaches providerCaches;
+    private ContractStore store;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData.init(dataSetSize);
+        providerCaches = new ProviderCaches();
+        providerCaches.getBanks().warmUp();
+        providerCaches.getBankAccounts().warmUp();
+        providerCaches.getContracts().warmUp();
+        store = ContractStore.build(providerCaches);
+    }
+
+    @Benchmark
+    public int v2() throws InterruptedException {
+        MessageQueue<PrintInputData> queue =
+                MessageQueue.create(MessageQueue.Type.RING_BUFFER, 4096, WaitStrategy.BLOCKING);
+        Print print = Print.builder(true).messageQueue(queue).printService(NO_OP_PRINT).build();
+        Thread printThread = new Thread(print);
+        printThread.start();
+
+        InkassoBatch inkassoBatch = InkassoBatch.builder(true).printQueue(queue).inkassoService(NO_OP_INKASSO)
+                                                .providerCaches(providerCaches).build();
+        inkassoBatch.runInkassoBatch();
+
+        print.stop();
+        printThread.join();
+        return inkassoBatch.getPrintRequestsCount();
+    }
+
+    /**
+     * Print requests as packed indexes into a {@link ContractStore}. With {@code -prof gc}, the allocation per
+     * operation divided by the number of contracts should be close to 0.
+     */
+    @Benchmark
+    public int v2Primitive() {
+        PrintRequestChannel channel = new PrintRequestChannel(Print.PRINT_QUEUE_CAPACITY);
+        PrimitivePrint print = new PrimitivePrint(true, channel, store, NO_OP_PRINT,
+                                                  Runtime.getRuntime().availableProcessors(),
+                                                  ExecutionBackend.PLATFORM, BatchMetrics.getDefault());
+        print.run();
+
+        // the queue is only used by the object path
+        InkassoBatch inkassoBatch = InkassoBatch.builder(true)
+                                                .printQueue(MessageQueue.create(MessageQueue.Type.RING_BUFFER, 1,
+                                                                                WaitStrategy.BLOCKING))
+                                                .inkassoService(NO_OP_INKASSO)
+                                                .providerCaches(providerCaches)
+                                                .build();
+        inkassoBatch.runInkassoBatch(store, channel);
+
+        print.stop();
+        return inkassoBatch.getPrintRequestsCount();
+    }
+}
@@ -0,0 +1,95 @@
+package tune.the.code.benchmark;
+
+import datamodel.Bank;
+import datamodel.BankAccount;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tune.the.code.v2.ContractStore;
+import tune.the.code.v2.MessageQueue;
+import tune.the.code.v2.PrintInputData;
+import tune.the.code.v2.PrintRequestChannel;
+import tune.the.code.v2.ProviderCaches;
+import tune.the.code.v2.WaitStrategy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One print request per operation, from the resolved contract to what the print service is called with: as a
+ * {@link PrintInputData} on a ring buffer {@link MessageQueue}, and as packed indexes on a
+ * {@link PrintRequestChannel}. Run with {@code -prof gc}, {@code gc.alloc.rate.norm} is the allocation per request
+ * and should be 0 for the channel.
+ *
+ * @since 18.10.2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrintChannelBenchmark {
+
+    private ContractStore store;
+    private MessageQueue<PrintInputData> queue;
+    private PrintRequestChannel channel;
+    private final long[] batch = new long[1];
+    private final BankAccount reusedAccount = new BankAccount(0, 0, 0);
+    private int next;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData.init("CHALLENGE");
+        store = ContractStore.build(new ProviderCaches());
+        queue = MessageQueue.create(MessageQueue.Type.RING_BUFFER, 64, WaitStrategy.BLOCKING);
+        channel = new PrintRequestChannel(64);
+    }
+
+    /**
+     * @return the next contract index that has an account with a bank
+     */
+    private int nextContract() {
+        while (true) {
+            int c = next;
+            next = next + 1 == store.contractCount() ? 0 : next + 1;
+            int a = store.accountIndexOfContract(c);
+            if (a != ContractStore.NOT_FOUND && store.bankIndexOfAccount(a) != ContractStore.NOT_FOUND) {
+                return c;
+            }
+        }
+    }
+
+    @Benchmark
+    public int printInputData() throws InterruptedException {
+        int c = nextContract();
+        int a = store.accountIndexOfContract(c);
+        queue.push(new PrintInputData(store.contractId(c), store.policyHolderName(c), store.bankOfAccount(a),
+                                      store.bankAccount(a)));
+
+        PrintInputData data = queue.pop(0);
+        return data.getBank().getName().length() + data.getBankAccount().getNumber()
+                + data.getContractPolicyHolderName().length();
+    }
+
+    @Benchmark
+    public int printRequestChannel() throws InterruptedException {
+        int c = nextContract();
+        channel.push(c, store.accountIndexOfContract(c));
+
+        channel.popBatch(batch, 1);
+        int contractIndex = PrintRequestChannel.contractIndex(batch[0]);
+        int accountIndex = PrintRequestChannel.accountIndex(batch[0]);
+        Bank bank = store.bankOfAccount(accountIndex);
+        reusedAccount.setId(store.accountId(accountIndex));
+        reusedAccount.setBankId(store.accountBankId(accountIndex));
+        reusedAccount.setNumber(store.accountNumber(accountIndex));
+        return bank.getName().length() + reusedAccount.getNumber() + store.policyHolderName(contractIndex).length();
+    }
+}
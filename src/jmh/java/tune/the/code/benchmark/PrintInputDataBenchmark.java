@@ -0,0 +1,54 @@
+package tune.the.code.benchmark;
+
+import datamodel.Bank;
+import datamodel.BankAccount;
+import datamodel.Contract;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tune.the.code.v2.PrintInputData;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-message costs on the print path: building the queue message and formatting the confirmation line.
+ *
+ * @since 18.10.2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrintInputDataBenchmark {
+
+    private final Contract contract = new Contract(4711, 815, "Günther,Andreas");
+    private final Bank bank = new Bank(7, "XYZ");
+    private final BankAccount bankAccount = new BankAccount(815, 7, 12345678);
+    private final PrintInputData data = new PrintInputData(contract, bank, bankAccount);
+
+    @Benchmark
+    public PrintInputData construct() {
+        return new PrintInputData(contract, bank, bankAccount);
+    }
+
+    @Benchmark
+    public String formatConfirmation() {
+        return "Printed confirmation for contract holder '" + data.getContractPolicyHolderName() + "', account "
+                + data.getBankAccount().getNumber() + " at " + data.getBank().getName();
+    }
+
+    @Benchmark
+    public String formatConfirmationWithFormatter() {
+        return String.format("Printed confirmation for contract holder '%s', account %d at %s",
+                             data.getContractPolicyHolderName(), data.getBankAccount().getNumber(),
+                             data.getBank().getName());
+    }
+}
@@ -0,0 +1,117 @@
+package tune.the.code.benchmark;
+
+import datamodel.Bank;
+import datamodel.BankAccount;
+import datamodel.Contract;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import tune.the.code.v2.MessageQueue;
+import tune.the.code.v2.PrintInputData;
+import tune.the.code.v2.WaitStrategy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Push followed by pop on a queue that already holds {@code backlog} messages. For v1 every pop re-allocates and
+ * copies the whole buffer, so its cost grows with the backlog. The contended variant runs the same operation on
+ * several threads against one shared queue, i.e. that many producers and consumers.
+ *
+ * @since 18.10.2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueueBenchmark {
+
+    public enum Impl {
+        V1, V2_LINKED, V2_RING_BUFFER
+    }
+
+    private interface Queue {
+        void push(PrintInputData data) throws InterruptedException;
+
+        PrintInputData pop() throws InterruptedException;
+    }
+
+    private static final PrintInputData MESSAGE =
+            new PrintInputData(new Contract(1, 2, "Vogel,Peter"), new Bank(3, "AB"), new BankAccount(2, 3, 12345678));
+
+    @Param({"V1", "V2_LINKED", "V2_RING_BUFFER"})
+    public Impl impl;
+
+    @Param({"0", "1000", "10000"})
+    public int backlog;
+
+    private Queue queue;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        switch (impl) {
+            case V1:
+                tune.the.code.v1.MessageQueue<PrintInputData> v1 = new tune.the.code.v1.MessageQueue<>();
+                queue = new Queue() {
+                    @Override
+                    public void push(PrintInputData data) {
+                        v1.push(data);
+                    }
+
+                    @Override
+                    public PrintInputData pop() {
+                        return v1.pop();
+                    }
+                };
+                break;
+            case V2_LINKED:
+                queue = v2(MessageQueue.create(MessageQueue.Type.LINKED, Integer.MAX_VALUE, WaitStrategy.BLOCKING));
+                break;
+            case V2_RING_BUFFER:
+            default:
+                // room for the backlog plus one message per benchmark thread
+                queue = v2(MessageQueue.create(MessageQueue.Type.RING_BUFFER, backlog + 64, WaitStrategy.BLOCKING));
+                break;
+        }
+        for (int i = 0; i < backlog; i++) {
+            queue.push(MESSAGE);
+        }
+    }
+
+    private static Queue v2(MessageQueue<PrintInputData> v2) {
+        return new Queue() {
+            @Override
+            public void push(PrintInputData data) throws InterruptedException {
+                v2.push(data);
+            }
+
+            @Override
+            public PrintInputData pop() throws InterruptedException {
+                return v2.pop(0);
+            }
+        };
+    }
+
+    @Benchmark
+    public PrintInputData pushPop() throws InterruptedException {
+        queue.push(MESSAGE);
+        return queue.pop();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public PrintInputData pushPopContended() throws InterruptedException {
+        queue.push(MESSAGE);
+        return queue.pop();
+    }
+}
@@ -0,0 +1,33 @@
+package tune.the.code;
+
+/**
+ * One complete inkasso and print run over the initialized {@link dataprovider.DataSet}, as compared by the
+ * {@link BenchmarkRunner}. New implementations only have to implement this interface to be benchmarked next to
+ * v1 and v2, see {@link BatchEngines#create(String)}.
+ *
+ * @since 18.10.2026
+ */
+public interface BatchEngine {
+
+    /**
+     * Runs inkasso and printing to completion, i.e. returns once the last confirmation has been printed.
+     */
+    void run();
+
+    int getInkassoCount();
+
+    int getPrintRequestsCount();
+
+    /**
+     * @return confirmations printed so far. Polled from another thread while {@link #run()} is in progress.
+     */
+    int getPrintCount();
+
+    /**
+     * @return contracts left out because an earlier run already printed their confirmation, they are neither in
+     * the inkasso count nor in the print counts
+     */
+    default int getUnchangedCount() {
+        return 0;
+    }
+}
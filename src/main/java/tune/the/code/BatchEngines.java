@@ -0,0 +1,437 @@
+package tune.the.code;
+
+import config.Config;
+import system.PrintSystem;
+import tune.the.code.v2.AdaptiveConcurrencyLimit;
+import tune.the.code.v2.BatchPipeline;
+import tune.the.code.v2.ContractFile;
+import tune.the.code.v2.ContractFileWriter;
+import tune.the.code.v2.ContractStore;
+import tune.the.code.v2.FairShareScheduler;
+import tune.the.code.v2.FingerprintIndex;
+import tune.the.code.v2.MessageQueue;
+import tune.the.code.v2.InkassoBatch;
+import tune.the.code.v2.PrimitivePrint;
+import tune.the.code.v2.Print;
+import tune.the.code.v2.PrintInputData;
+import tune.the.code.v2.PrintInputDataCodec;
+import tune.the.code.v2.PrintRequestChannel;
+import tune.the.code.v2.ProviderCaches;
+import tune.the.code.v2.ProviderSnapshot;
+import tune.the.code.v2.ReactiveBatch;
+import tune.the.code.v2.WaitStrategy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The engines known to the {@link BenchmarkRunner} by name. Each engine is created fresh for a trial.
+ *
+ * @since 18.10.2026
+ */
+public final class BatchEngines {
+
+    private static final Map<String, Supplier<BatchEngine>> ENGINES = new LinkedHashMap<>();
+
+    static {
+        ENGINES.put("v1", V1Engine::new);
+        ENGINES.put("v2-honest", () -> new V2Engine(false));
+        ENGINES.put("v2-dark", () -> new V2Engine(true));
+        ENGINES.put("v2-store-honest", () -> new V2StoreEngine(false));
+        ENGINES.put("v2-store-dark", () -> new V2StoreEngine(true));
+        ENGINES.put("v2-snapshot-honest", () -> new V2SnapshotEngine(false));
+        ENGINES.put("v2-snapshot-dark", () -> new V2SnapshotEngine(true));
+        ENGINES.put("v2-delta-honest", () -> new V2DeltaEngine(false));
+        ENGINES.put("v2-delta-dark", () -> new V2DeltaEngine(true));
+        ENGINES.put("v2-primitive-honest", () -> new V2PrimitiveEngine(false));
+        ENGINES.put("v2-primitive-dark", () -> new V2PrimitiveEngine(true));
+        ENGINES.put("v2-adaptive-honest", V2AdaptiveEngine::new);
+        ENGINES.put("v2-spill-honest", V2SpillEngine::new);
+        ENGINES.put("v2-shared-honest", V2SharedEngine::new);
+        ENGINES.put("v2-file-honest", V2FileEngine::new);
+        ENGINES.put("v2-flow-honest", () -> new V2FlowEngine(false));
+        ENGINES.put("v2-flow-dark", () -> new V2FlowEngine(true));
+    }
+
+    private BatchEngines() {
+    }
+
+    public static List<String> names() {
+        return Collections.unmodifiableList(new ArrayList<>(ENGINES.keySet()));
+    }
+
+    /**
+     * @param name one of {@link #names()}, or the fully qualified name of a {@link BatchEngine} implementation
+     *             with a public no-argument constructor
+     */
+    public static BatchEngine create(String name) {
+        Supplier<BatchEngine> engine = ENGINES.get(name);
+        if (engine != null) {
+            return engine.get();
+        }
+        try {
+            return (BatchEngine) Class.forName(name).getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Unknown engine " + name + ", expected one of " + names()
+                                                       + " or a BatchEngine class", e);
+        }
+    }
+
+    private static final class V1Engine implements BatchEngine {
+
+        private final tune.the.code.v1.InkassoBatch inkassoBatch = new tune.the.code.v1.InkassoBatch();
+
+        @Override
+        public void run() {
+            tune.the.code.v1.Print print = new tune.the.code.v1.Print();
+            Thread printThread = new Thread(print);
+            printThread.start();
+            inkassoBatch.runInkassoBatch();
+            print.stop();
+            try {
+                printThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public int getInkassoCount() {
+            return inkassoBatch.getInkassoCount();
+        }
+
+        @Override
+        public int getPrintRequestsCount() {
+            return inkassoBatch.getPrintRequestsCount();
+        }
+
+        @Override
+        public int getPrintCount() {
+            return PrintSystem.getPrintCount();
+        }
+    }
+
+    /**
+     * Same wiring as {@link Main}.
+     */
+    private static class V2Engine implements BatchEngine {
+
+        final InkassoBatch inkassoBatch;
+        final Print print;
+
+        private V2Engine(boolean turnToTheDarkSide) {
+            this(turnToTheDarkSide, MessageQueue.create(MessageQueue.Type.RING_BUFFER, Print.PRINT_QUEUE_CAPACITY,
+                                                        WaitStrategy.BLOCKING));
+        }
+
+        /**
+         * Each engine gets a queue of its own instead of the process-wide one, so that engines of any kind can run
+         * one after the other in the same process.
+         */
+        private V2Engine(boolean turnToTheDarkSide, MessageQueue<PrintInputData> queue) {
+            this(new InkassoBatch(turnToTheDarkSide, queue), new Print(turnToTheDarkSide, queue));
+        }
+
+        private V2Engine(InkassoBatch inkassoBatch, Print print) {
+            this.inkassoBatch = inkassoBatch;
+            this.print = print;
+        }
+
+        @Override
+        public void run() {
+            print.run();
+            runInkassoBatch();
+            print.stop();
+        }
+
+        void runInkassoBatch() {
+            inkassoBatch.runInkassoBatch();
+        }
+
+        @Override
+        public int getInkassoCount() {
+            return inkassoBatch.getInkassoCount();
+        }
+
+        @Override
+        public int getPrintRequestsCount() {
+            return inkassoBatch.getPrintRequestsCount();
+        }
+
+        @Override
+        public int getPrintCount() {
+            return print.getPrintCount();
+        }
+    }
+
+    /**
+     * Loads the providers into a {@link ContractStore} first, the load is part of the measurement.
+     */
+    private static final class V2StoreEngine extends V2Engine {
+
+        private V2StoreEngine(boolean turnToTheDarkSide) {
+            super(turnToTheDarkSide);
+        }
+
+        @Override
+        void runInkassoBatch() {
+            inkassoBatch.runInkassoBatch(ContractStore.build(new ProviderCaches()));
+        }
+    }
+
+    /**
+     * Like {@link V2StoreEngine}, but takes the store from a {@link ProviderSnapshot} if there is one for the data
+     * set, and writes it otherwise. The first trial with a new data set therefore pays for building and writing the
+     * snapshot, the following ones only for loading it. The file is the system property
+     * {@value ProviderSnapshot#PATH_PROPERTY}, by default in the temporary directory, the generation of the data set
+     * the property {@value ProviderSnapshot#GENERATION_PROPERTY}, which {@link BenchmarkTrial} sets.
+     */
+    private static final class V2SnapshotEngine extends V2Engine {
+
+        private final Path snapshot;
+        private final long generation;
+
+        private V2SnapshotEngine(boolean turnToTheDarkSide) {
+            super(turnToTheDarkSide);
+            String generation = System.getProperty(ProviderSnapshot.GENERATION_PROPERTY);
+            if (generation == null) {
+                throw new IllegalStateException("The snapshot engines need the system property "
+                                                        + ProviderSnapshot.GENERATION_PROPERTY);
+            }
+            this.generation = Long.parseLong(generation);
+            this.snapshot = Paths.get(System.getProperty(ProviderSnapshot.PATH_PROPERTY,
+                                                         Paths.get(System.getProperty("java.io.tmpdir"),
+                                                                   "provider-snapshot.bin").toString()));
+        }
+
+        @Override
+        void runInkassoBatch() {
+            inkassoBatch.runInkassoBatch(ProviderSnapshot.loadOrBuild(snapshot, generation, new ProviderCaches()));
+        }
+    }
+
+    /**
+     * Like {@link V2StoreEngine}, but leaves out the contracts that did not change since the last run, see
+     * {@link FingerprintIndex}. The index is the file in the system property {@value FingerprintIndex#PATH_PROPERTY},
+     * by default in the temporary directory. With {@value FingerprintIndex#FULL_RERUN_PROPERTY}{@code =true} every
+     * contract is processed and the index written anew. The contracts left out count as collected, requested and
+     * printed, so that the invariant still covers every contract.
+     */
+    private static final class V2DeltaEngine extends V2Engine {
+
+        private V2DeltaEngine(boolean turnToTheDarkSide) {
+            this(turnToTheDarkSide, MessageQueue.create(MessageQueue.Type.RING_BUFFER, Print.PRINT_QUEUE_CAPACITY,
+                                                        WaitStrategy.BLOCKING),
+                 new FingerprintIndex(Paths.get(System.getProperty(
+                         FingerprintIndex.PATH_PROPERTY,
+                         Paths.get(System.getProperty("java.io.tmpdir"), "fingerprints.bin").toString())),
+                                      Boolean.getBoolean(FingerprintIndex.FULL_RERUN_PROPERTY)));
+        }
+
+        private V2DeltaEngine(boolean turnToTheDarkSide, MessageQueue<PrintInputData> queue,
+                              FingerprintIndex fingerprints) {
+            super(InkassoBatch.builder(turnToTheDarkSide).printQueue(queue).fingerprints(fingerprints).build(),
+                  Print.builder(turnToTheDarkSide).messageQueue(queue).fingerprints(fingerprints).build());
+        }
+
+        @Override
+        void runInkassoBatch() {
+            inkassoBatch.runInkassoBatch(ContractStore.build(new ProviderCaches()));
+        }
+
+        @Override
+        public int getUnchangedCount() {
+            return inkassoBatch.getUnchangedCount();
+        }
+    }
+
+    /**
+     * Honest, but has to find out the capacity of both systems by itself.
+     */
+    private static final class V2AdaptiveEngine extends V2Engine {
+
+        private V2AdaptiveEngine() {
+            this(MessageQueue.create(MessageQueue.Type.RING_BUFFER, Print.PRINT_QUEUE_CAPACITY,
+                                     WaitStrategy.BLOCKING),
+                 new AdaptiveConcurrencyLimit("inkasso"), new AdaptiveConcurrencyLimit("print"));
+        }
+
+        private V2AdaptiveEngine(MessageQueue<PrintInputData> queue, AdaptiveConcurrencyLimit inkassoLimit,
+                                 AdaptiveConcurrencyLimit printLimit) {
+            super(InkassoBatch.builder(false).printQueue(queue).inkassoLimit(inkassoLimit).build(),
+                  Print.builder(false).messageQueue(queue).concurrency(printLimit.getMaxLimit())
+                       .printLimit(printLimit).build());
+        }
+    }
+
+    /**
+     * Honest, with a print queue that keeps only a few requests on the heap and spills the backlog to disk.
+     */
+    private static final class V2SpillEngine extends V2Engine {
+
+        private static final int HIGH_WATER_MARK = 64;
+
+        private V2SpillEngine() {
+            this(MessageQueue.createSpilling(HIGH_WATER_MARK, PrintInputDataCodec.INSTANCE,
+                                             Paths.get(System.getProperty("java.io.tmpdir"))));
+        }
+
+        private V2SpillEngine(MessageQueue<PrintInputData> queue) {
+            super(new InkassoBatch(false, queue), new Print(false, queue));
+        }
+    }
+
+    /**
+     * Honest, streams the contracts from a file instead of holding them in memory. The file named by
+     * {@value ContractFile#PATH_PROPERTY} is streamed as it is, it has to hold the data set of the trial. Without it
+     * the provider data is written to a temporary file first, as a stand-in for a batch that gets its contracts
+     * delivered as a file. That builds the whole {@link ContractStore} once, so only the batch itself runs with a
+     * heap that does not grow with the data set, the peak heap of the trial still does.
+     */
+    private static final class V2FileEngine extends V2Engine {
+
+        private V2FileEngine() {
+            super(false);
+        }
+
+        @Override
+        void runInkassoBatch() {
+            String existing = System.getProperty(ContractFile.PATH_PROPERTY);
+            Path path = existing == null ? null : Paths.get(existing);
+            try {
+                if (existing == null) {
+                    path = Files.createTempFile("contracts-", ".bin");
+                    ContractFileWriter.write(path, ContractStore.build(new ProviderCaches()));
+                }
+                try (ContractFile file = new ContractFile(path)) {
+                    inkassoBatch.runInkassoBatch(file);
+                }
+            } catch (IOException e) {
+                System.err.println("Could not stream the contracts from " + path + ": " + e.getLocalizedMessage());
+            } finally {
+                if (existing == null && path != null) {
+                    path.toFile().delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Two pipelines of equal weight side by side, one for each half of the contract ids, sharing the permits of
+     * both systems.
+     */
+    private static final class V2SharedEngine implements BatchEngine {
+
+        private final FairShareScheduler inkassoPermits = new FairShareScheduler("inkasso",
+                                                                                 Config.INKASSO_CAPABILITIES);
+        private final FairShareScheduler printPermits = new FairShareScheduler("print", Config.PRINT_CAPABILITIES);
+        private final BatchPipeline lower = new BatchPipeline("lower", false, inkassoPermits, printPermits, 1);
+        private final BatchPipeline upper = new BatchPipeline("upper", false, inkassoPermits, printPermits, 1);
+
+        @Override
+        public void run() {
+            ContractStore store = ContractStore.build(new ProviderCaches());
+            int middle = store.contractCount() == 0 ? 0 : store.contractId(store.contractCount() / 2);
+            Thread lowerThread = new Thread(() -> lower.run(store, Integer.MIN_VALUE, middle), "pipeline-lower");
+            lowerThread.start();
+            upper.run(store, middle, Integer.MAX_VALUE);
+            try {
+                lowerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public int getInkassoCount() {
+            return lower.getInkassoCount() + upper.getInkassoCount();
+        }
+
+        @Override
+        public int getPrintRequestsCount() {
+            return lower.getPrintRequestsCount() + upper.getPrintRequestsCount();
+        }
+
+        @Override
+        public int getPrintCount() {
+            return lower.getPrintCount() + upper.getPrintCount();
+        }
+    }
+
+    private static final class V2FlowEngine implements BatchEngine {
+
+        private final ReactiveBatch batch;
+
+        private V2FlowEngine(boolean turnToTheDarkSide) {
+            this.batch = new ReactiveBatch(turnToTheDarkSide);
+        }
+
+        @Override
+        public void run() {
+            batch.runInkassoBatch(ContractStore.build(new ProviderCaches()));
+        }
+
+        @Override
+        public int getInkassoCount() {
+            return batch.getInkassoCount();
+        }
+
+        @Override
+        public int getPrintRequestsCount() {
+            return batch.getPrintRequestsCount();
+        }
+
+        @Override
+        public int getPrintCount() {
+            return batch.getPrintCount();
+        }
+    }
+
+    private static final class V2PrimitiveEngine implements BatchEngine {
+
+        private final boolean turnToTheDarkSide;
+        private final InkassoBatch inkassoBatch;
+        private volatile PrimitivePrint print;
+
+        private V2PrimitiveEngine(boolean turnToTheDarkSide) {
+            this.turnToTheDarkSide = turnToTheDarkSide;
+            // the print requests go through the channel, the queue stays empty
+            this.inkassoBatch = new InkassoBatch(turnToTheDarkSide, MessageQueue.create(
+                    MessageQueue.Type.LINKED, Integer.MAX_VALUE, WaitStrategy.BLOCKING));
+        }
+
+        @Override
+        public void run() {
+            ContractStore store = ContractStore.build(new ProviderCaches());
+            PrintRequestChannel channel = new PrintRequestChannel(Print.PRINT_QUEUE_CAPACITY);
+            print = new PrimitivePrint(turnToTheDarkSide, channel, store);
+            print.run();
+            inkassoBatch.runInkassoBatch(store, channel);
+            print.stop();
+        }
+
+        @Override
+        public int getInkassoCount() {
+            return inkassoBatch.getInkassoCount();
+        }
+
+        @Override
+        public int getPrintRequestsCount() {
+            return inkassoBatch.getPrintRequestsCount();
+        }
+
+        @Override
+        public int getPrintCount() {
+            PrimitivePrint current = print;
+            return current == null ? 0 : current.getPrintCount();
+        }
+    }
+}
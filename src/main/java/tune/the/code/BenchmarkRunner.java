@@ -0,0 +1,231 @@
+package tune.the.code;
+
+import tune.the.code.v2.BatchMetrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+/**
+ * Macro benchmark of whole batch runs, as opposed to the JMH micro benchmarks. Every trial runs in a freshly forked
+ * JVM, see {@link BenchmarkTrial}, and reports throughput, p50/p99 latency per contract, p50/p99 completion time,
+ * peak heap, GC time and peak thread count. Trials that break the count invariant are flagged and make the runner exit with 1.
+ * <pre>
+ * java -cp target/classes:src/main/resources/inkasso-system.jar tune.the.code.BenchmarkRunner \
+ *     --engine v2-dark,v2-store-dark --dataset MINI --repetitions 3 --format csv --output results.csv
+ * </pre>
+ *
+ * @since 18.10.2026
+ */
+public final class BenchmarkRunner {
+
+    private static final List<String> COLUMNS = Collections.unmodifiableList(Arrays.asList(
+            "engine", "dataSet", "trial", "expected", "inkassoCount", "printRequestsCount", "printCount",
+            "unchangedCount", "invariantHolds", "wallMillis", "contractsPerSecond", "latencyP50Millis",
+            "latencyP99Millis", "completionP50Millis", "completionP99Millis", "peakHeapBytes", "gcMillis", "gcCount",
+            "peakThreads"));
+    private static final List<String> TEXT_COLUMNS = Arrays.asList("engine", "dataSet");
+
+    private final List<String> engines;
+    private final String dataSet;
+    private final int repetitions;
+    private final List<String> jvmArgs;
+    private final Path metricsDirectory;
+
+    public BenchmarkRunner(List<String> engines, String dataSet, int repetitions, List<String> jvmArgs) {
+        this(engines, dataSet, repetitions, jvmArgs, null);
+    }
+
+    /**
+     * @param metricsDirectory gets the stage metrics of every trial as {@code <engine>-<trial>.json}, may be null
+     */
+    public BenchmarkRunner(List<String> engines, String dataSet, int repetitions, List<String> jvmArgs,
+                           Path metricsDirectory) {
+        if (repetitions < 1) {
+            throw new IllegalArgumentException("repetitions must be positive");
+        }
+        this.engines = engines;
+        this.dataSet = dataSet;
+        this.repetitions = repetitions;
+        this.jvmArgs = jvmArgs;
+        this.metricsDirectory = metricsDirectory;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        List<String> engines = Collections.singletonList("v2-dark");
+        String dataSet = "MINI";
+        int repetitions = 1;
+        String format = "csv";
+        String output = null;
+        List<String> jvmArgs = Collections.emptyList();
+        Path metricsDirectory = null;
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--engine":
+                    engines = Arrays.asList(required(args[i], value).split(","));
+                    break;
+                case "--dataset":
+                    dataSet = required(args[i], value);
+                    break;
+                case "--repetitions":
+                    repetitions = Integer.parseInt(required(args[i], value));
+                    break;
+                case "--format":
+                    format = required(args[i], value);
+                    break;
+                case "--output":
+                    output = required(args[i], value);
+                    break;
+                case "--jvm-args":
+                    jvmArgs = Arrays.asList(required(args[i], value).trim().split("\\s+"));
+                    break;
+                case "--metrics-dir":
+                    metricsDirectory = Paths.get(required(args[i], value));
+                    break;
+                default:
+                    usage("Unknown option " + args[i]);
+            }
+            i++;
+        }
+        if (!format.equals("csv") && !format.equals("json")) {
+            usage("Unknown format " + format);
+        }
+
+        List<Properties> results = new BenchmarkRunner(engines, dataSet, repetitions, jvmArgs, metricsDirectory).run();
+
+        PrintStream out = output == null
+                          ? System.out : new PrintStream(Files.newOutputStream(Paths.get(output)), true, "UTF-8");
+        try {
+            out.print(format.equals("csv") ? toCsv(results) : toJson(results));
+        } finally {
+            if (out != System.out) {
+                out.close();
+            }
+        }
+        boolean invariantHolds = results.stream().allMatch(r -> Boolean.parseBoolean(r.getProperty("invariantHolds")));
+        if (!invariantHolds) {
+            System.err.println("Probably incorrect computation, Inkasso & Print counts not equal expected results");
+            System.exit(1);
+        }
+    }
+
+    private static String required(String option, String value) {
+        if (value == null) {
+            usage(option + " needs a value");
+        }
+        return value;
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Usage: BenchmarkRunner [--engine " + String.join("|", BatchEngines.names())
+                                   + "|<class>[,...]] [--dataset MINI|MEDIUM|CHALLENGE|LARGE|banks,accounts,contracts,"
+                                   + "ratio] [--repetitions n] [--format csv|json] [--output file] "
+                                   + "[--jvm-args \"...\"] [--metrics-dir directory]");
+        System.exit(2);
+    }
+
+    /**
+     * Runs the trials one after another, engines interleaved per repetition so that a drift of the machine does not
+     * favour one engine.
+     */
+    public List<Properties> run() throws IOException, InterruptedException {
+        if (metricsDirectory != null) {
+            Files.createDirectories(metricsDirectory);
+        }
+        List<Properties> results = new ArrayList<>();
+        for (int trial = 1; trial <= repetitions; trial++) {
+            for (String engine : engines) {
+                Properties result = runTrial(engine, trial);
+                System.err.println(engine + " trial " + trial + ": " + result.getProperty("wallMillis") + " ms, "
+                                           + result.getProperty("contractsPerSecond") + " contracts/s, invariant "
+                                           + (Boolean.parseBoolean(result.getProperty("invariantHolds"))
+                                              ? "holds" : "broken"));
+                results.add(result);
+            }
+        }
+        return results;
+    }
+
+    private Properties runTrial(String engine, int trial) throws IOException, InterruptedException {
+        Path resultFile = Files.createTempFile("benchmark-trial", ".properties");
+        Path logFile = Files.createTempFile("benchmark-trial", ".log");
+        try {
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            command.addAll(jvmArgs);
+            if (metricsDirectory != null) {
+                Path metricsFile = metricsDirectory.resolve(engine + "-" + trial + ".json").toAbsolutePath();
+                command.add("-D" + BatchMetrics.JSON_PATH_PROPERTY + "=" + metricsFile);
+            }
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(BenchmarkTrial.class.getName());
+            command.add(engine);
+            command.add(dataSet);
+            command.add(resultFile.toString());
+            Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                                                         .redirectOutput(logFile.toFile())
+                                                         .start();
+            int exitCode = process.waitFor();
+            Properties result = new Properties();
+            if (exitCode != 0 || Files.size(resultFile) == 0) {
+                System.err.println(engine + " trial " + trial + " failed with exit code " + exitCode + ":");
+                System.err.println(new String(Files.readAllBytes(logFile), StandardCharsets.UTF_8));
+                result.setProperty("engine", engine);
+                result.setProperty("dataSet", dataSet);
+                result.setProperty("invariantHolds", "false");
+            } else {
+                try (InputStream in = Files.newInputStream(resultFile)) {
+                    result.load(in);
+                }
+            }
+            result.setProperty("trial", String.valueOf(trial));
+            return result;
+        } finally {
+            Files.deleteIfExists(resultFile);
+            Files.deleteIfExists(logFile);
+        }
+    }
+
+    static String toCsv(List<Properties> results) {
+        StringBuilder csv = new StringBuilder(String.join(",", COLUMNS)).append(System.lineSeparator());
+        for (Properties result : results) {
+            csv.append(COLUMNS.stream()
+                              .map(column -> csvValue(result.getProperty(column, "")))
+                              .collect(Collectors.joining(",")))
+               .append(System.lineSeparator());
+        }
+        return csv.toString();
+    }
+
+    private static String csvValue(String value) {
+        return value.indexOf(',') < 0 ? value : '"' + value + '"';
+    }
+
+    static String toJson(List<Properties> results) {
+        return results.stream()
+                      .map(result -> COLUMNS.stream()
+                                            .filter(result::containsKey)
+                                            .map(column -> "\"" + column + "\":" + jsonValue(column, result))
+                                            .collect(Collectors.joining(",", "  {", "}")))
+                      .collect(Collectors.joining("," + System.lineSeparator(), "[" + System.lineSeparator(),
+                                                  System.lineSeparator() + "]" + System.lineSeparator()));
+    }
+
+    private static String jsonValue(String column, Properties result) {
+        String value = result.getProperty(column);
+        return TEXT_COLUMNS.contains(column) ? "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"" : value;
+    }
+}
@@ -0,0 +1,227 @@
+package tune.the.code;
+
+import config.Config;
+import config.GeneratorConfig;
+import dataprovider.ContractProvider;
+import dataprovider.DataSet;
+import tune.the.code.v2.BatchMetrics;
+import tune.the.code.v2.LatencyHistogram;
+import tune.the.code.v2.ProviderSnapshot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single trial of the {@link BenchmarkRunner}, run in a JVM of its own because {@link DataSet} can only be
+ * initialized once. Writes its result as a properties file.
+ * <p>
+ * Arguments: engine, data set ({@code MINI}, {@code MEDIUM}, {@code CHALLENGE}, {@code LARGE} or
+ * {@code banks,accounts,contracts,withAccountRatio}) and the result file.
+ * <p>
+ * The latency per contract is the time from handing the contract to the batch until its confirmation is printed,
+ * as recorded by the engine in {@link BatchMetrics#endToEnd()} of the default metrics. Engines that keep no such
+ * time, v1 and the primitive engines, or that report to metrics of their own leave these columns empty.
+ * <p>
+ * Completion is taken from outside the engine, so that every engine is measured the same way: a probe polls the
+ * engine's print count, and the p-th percentile is the time from the start of the batch until p percent of the
+ * confirmations to print were printed.
+ *
+ * @since 18.10.2026
+ */
+public final class BenchmarkTrial {
+
+    private static final long PROBE_INTERVAL_MILLIS = 5;
+
+    private BenchmarkTrial() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length != 3) {
+            System.err.println("Usage: BenchmarkTrial <engine> <data set> <result file>");
+            System.exit(2);
+        }
+        GeneratorConfig config = dataSet(args[1]);
+        DataSet.init(config);
+        if (System.getProperty(ProviderSnapshot.GENERATION_PROPERTY) == null) {
+            System.setProperty(ProviderSnapshot.GENERATION_PROPERTY,
+                               String.valueOf(ProviderSnapshot.generationOf(config)));
+        }
+        long expected = ContractProvider.getContractsWithBankAccountsCount();
+        BatchEngine engine = BatchEngines.create(args[0]);
+
+        resetPeaks();
+        long gcMillisBefore = gcMillis();
+        long gcCountBefore = gcCount();
+        CompletionProbe probe = new CompletionProbe(engine);
+        long start = System.nanoTime();
+        probe.start(start);
+        engine.run();
+        long wallNanos = System.nanoTime() - start;
+        probe.stopAndAwait();
+
+        Properties result = new Properties();
+        result.setProperty("engine", args[0]);
+        result.setProperty("dataSet", args[1]);
+        result.setProperty("expected", String.valueOf(expected));
+        result.setProperty("inkassoCount", String.valueOf(engine.getInkassoCount()));
+        result.setProperty("printRequestsCount", String.valueOf(engine.getPrintRequestsCount()));
+        result.setProperty("printCount", String.valueOf(engine.getPrintCount()));
+        result.setProperty("unchangedCount", String.valueOf(engine.getUnchangedCount()));
+        // a delta run accounts for every contract either by an inkasso or as unchanged
+        result.setProperty("invariantHolds",
+                           String.valueOf(engine.getInkassoCount() + engine.getUnchangedCount() == expected
+                                                  && engine.getPrintRequestsCount() + engine.getUnchangedCount()
+                                                     == expected));
+        result.setProperty("wallMillis", String.valueOf(TimeUnit.NANOSECONDS.toMillis(wallNanos)));
+        result.setProperty("contractsPerSecond", String.format(Locale.ROOT, "%.1f", expected * 1e9 / wallNanos));
+        LatencyHistogram latency = BatchMetrics.getDefault().endToEnd();
+        if (latency.getCount() > 0) {
+            result.setProperty("latencyP50Millis", millis(latency.getPercentile(50)));
+            result.setProperty("latencyP99Millis", millis(latency.getPercentile(99)));
+        }
+        // a delta run does not print the unchanged contracts
+        long toPrint = expected - engine.getUnchangedCount();
+        result.setProperty("completionP50Millis", String.valueOf(probe.percentileMillis(toPrint, 50, wallNanos)));
+        result.setProperty("completionP99Millis", String.valueOf(probe.percentileMillis(toPrint, 99, wallNanos)));
+        result.setProperty("peakHeapBytes", String.valueOf(peakHeapBytes()));
+        result.setProperty("gcMillis", String.valueOf(gcMillis() - gcMillisBefore));
+        result.setProperty("gcCount", String.valueOf(gcCount() - gcCountBefore));
+        result.setProperty("peakThreads", String.valueOf(ManagementFactory.getThreadMXBean().getPeakThreadCount()));
+        try (OutputStream out = Files.newOutputStream(Paths.get(args[2]))) {
+            result.store(out, null);
+        }
+        // engines may leave non-daemon threads behind, v1's print loop for example
+        System.exit(0);
+    }
+
+    static GeneratorConfig dataSet(String name) {
+        switch (name) {
+            case "MINI":
+                return Config.DATA_SET_SIZE_MINI;
+            case "MEDIUM":
+                return Config.DATA_SET_SIZE_MEDIUM;
+            case "CHALLENGE":
+                return Config.DATA_SET_SIZE_CHALLENGE;
+            case "LARGE":
+                return new GeneratorConfig(100, 50_000, 200_000, 0.6);
+            default:
+                String[] parts = name.split(",");
+                if (parts.length != 4) {
+                    throw new IllegalArgumentException("Unknown data set " + name
+                                                               + ", expected banks,accounts,contracts,ratio");
+                }
+                return new GeneratorConfig(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()),
+                                           Integer.parseInt(parts[2].trim()), Double.parseDouble(parts[3].trim()));
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static void resetPeaks() {
+        ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+        ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+    }
+
+    /**
+     * Sum of the pools' peaks, an upper bound since the pools need not peak at the same time.
+     */
+    private static long peakHeapBytes() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                                .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                                .sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                                .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                                .mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    /**
+     * Records when the print count changes, in an array that only the probe thread writes.
+     */
+    private static final class CompletionProbe implements Runnable {
+
+        private final BatchEngine engine;
+        private final Thread thread = new Thread(this, "completion-probe");
+        private volatile boolean running = true;
+        private long start;
+        private long[] times = new long[1024];
+        private int[] counts = new int[1024];
+        private int samples;
+
+        private CompletionProbe(BatchEngine engine) {
+            this.engine = engine;
+            thread.setDaemon(true);
+        }
+
+        private void start(long startNanos) {
+            this.start = startNanos;
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            int last = -1;
+            while (running) {
+                last = sample(last);
+                try {
+                    Thread.sleep(PROBE_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            sample(last);
+        }
+
+        private int sample(int last) {
+            int count = engine.getPrintCount();
+            if (count != last) {
+                if (samples == times.length) {
+                    times = Arrays.copyOf(times, samples * 2);
+                    counts = Arrays.copyOf(counts, samples * 2);
+                }
+                times[samples] = System.nanoTime() - start;
+                counts[samples] = count;
+                samples++;
+            }
+            return count;
+        }
+
+        private void stopAndAwait() throws InterruptedException {
+            running = false;
+            thread.join();
+        }
+
+        /**
+         * @return the wall time if the engine never reached the count, e.g. because it failed or only reports
+         * its prints at the end
+         */
+        private long percentileMillis(long expected, double percentile, long wallNanos) {
+            long target = (long) Math.ceil(expected * percentile / 100);
+            for (int i = 0; i < samples; i++) {
+                if (counts[i] >= target) {
+                    return TimeUnit.NANOSECONDS.toMillis(Math.min(times[i], wallNanos));
+                }
+            }
+            return TimeUnit.NANOSECONDS.toMillis(wallNanos);
+        }
+    }
+}
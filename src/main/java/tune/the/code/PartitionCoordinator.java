@@ -0,0 +1,353 @@
+package tune.the.code;
+
+import dataprovider.ContractProvider;
+import dataprovider.DataSet;
+import tune.the.code.v2.ContractStore;
+import tune.the.code.v2.ProviderCaches;
+import tune.the.code.v2.ResumeJournal;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Runs one batch in several JVMs on the same machine. The coordinator splits the contract id space into ranges,
+ * forks {@link PartitionWorker} processes and hands out the ranges over loopback TCP, one at a time per worker. A
+ * worker runs its own inkasso/print pipeline per range and reports the range's counts back.
+ * <p>
+ * If a worker dies, its connection breaks and the coordinator puts its range back for the others, and forks a
+ * replacement as long as restarts are left. Every range has a {@link ResumeJournal}, so the worker that takes over
+ * only repeats what the dead one had not marked done. At the end the invariant of {@link Main} is checked over all
+ * ranges: the collected contracts, counting those a dead worker collected before, and the print requests must both
+ * equal the expected count.
+ * <pre>
+ * java -cp target/classes:src/main/resources/inkasso-system.jar tune.the.code.PartitionCoordinator \
+ *     --workers 4 --dataset MEDIUM --mode honest
+ * </pre>
+ *
+ * @since 18.10.2026
+ */
+public final class PartitionCoordinator {
+
+    static final String READY = "READY";
+    static final String RANGE = "RANGE";
+    static final String DONE = "DONE";
+    static final String STOP = "STOP";
+
+    private static final long POLL_MILLIS = 100;
+
+    private final String dataSet;
+    private final int workerCount;
+    private final int rangesPerWorker;
+    private final boolean turnToTheDarkSide;
+    private final Path journalDirectory;
+    private final List<String> jvmArgs;
+    private final int maxRestarts;
+
+    private final BlockingQueue<Range> pending = new LinkedBlockingQueue<>();
+    private final List<Process> workers = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger restarts = new AtomicInteger();
+    private AtomicReferenceArray<long[]> results;
+    private AtomicInteger remaining;
+
+    public PartitionCoordinator(String dataSet, int workerCount, int rangesPerWorker, boolean turnToTheDarkSide,
+                                Path journalDirectory, List<String> jvmArgs, int maxRestarts) {
+        if (workerCount < 1 || rangesPerWorker < 1 || maxRestarts < 0) {
+            throw new IllegalArgumentException("Need at least one worker and one range per worker");
+        }
+        this.dataSet = dataSet;
+        this.workerCount = workerCount;
+        this.rangesPerWorker = rangesPerWorker;
+        this.turnToTheDarkSide = turnToTheDarkSide;
+        this.journalDirectory = journalDirectory;
+        this.jvmArgs = jvmArgs;
+        this.maxRestarts = maxRestarts;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String dataSet = "MINI";
+        int workerCount = 2;
+        int rangesPerWorker = 4;
+        boolean turnToTheDarkSide = false;
+        Path journalDirectory = null;
+        List<String> jvmArgs = Collections.emptyList();
+        Integer maxRestarts = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--dataset":
+                    dataSet = args[i + 1];
+                    break;
+                case "--workers":
+                    workerCount = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--ranges-per-worker":
+                    rangesPerWorker = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--mode":
+                    turnToTheDarkSide = "dark".equals(args[i + 1]);
+                    break;
+                case "--journal-dir":
+                    journalDirectory = Paths.get(args[i + 1]);
+                    break;
+                case "--jvm-args":
+                    jvmArgs = Arrays.asList(args[i + 1].trim().split("\\s+"));
+                    break;
+                case "--max-restarts":
+                    maxRestarts = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+        if (args.length % 2 != 0) {
+            System.err.println("Usage: PartitionCoordinator [--dataset name] [--workers n] [--ranges-per-worker n] "
+                                       + "[--mode honest|dark] [--journal-dir dir] [--jvm-args \"...\"] "
+                                       + "[--max-restarts n]");
+            System.exit(2);
+        }
+        if (journalDirectory == null) {
+            journalDirectory = Files.createTempDirectory("inkasso-partitions");
+        }
+        Files.createDirectories(journalDirectory);
+
+        boolean invariantHolds = new PartitionCoordinator(dataSet, workerCount, rangesPerWorker, turnToTheDarkSide,
+                                                          journalDirectory, jvmArgs,
+                                                          maxRestarts == null ? workerCount : maxRestarts).run();
+        System.exit(invariantHolds ? 0 : 1);
+    }
+
+    /**
+     * @return whether the counts over all ranges match the expected count
+     */
+    public boolean run() throws IOException, InterruptedException {
+        final long startTime = System.currentTimeMillis();
+        DataSet.init(BenchmarkTrial.dataSet(dataSet));
+        long expected = ContractProvider.getContractsWithBankAccountsCount();
+        List<Range> ranges = split(ContractStore.build(new ProviderCaches()), workerCount * rangesPerWorker);
+        pending.addAll(ranges);
+        results = new AtomicReferenceArray<>(ranges.size());
+        remaining = new AtomicInteger(ranges.size());
+        System.out.println("Expecting " + expected + " inkasso & print requests in " + ranges.size() + " ranges");
+
+        try (ServerSocket server = new ServerSocket(0, workerCount, InetAddress.getLoopbackAddress())) {
+            Thread acceptor = new Thread(() -> accept(server), "partition-acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            for (int i = 0; i < workerCount; i++) {
+                startWorker(server.getLocalPort());
+            }
+            if (!awaitRanges(server.getLocalPort())) {
+                System.err.println(remaining.get() + " ranges left, but all workers died and no restarts are left");
+                return false;
+            }
+        } finally {
+            awaitWorkers();
+        }
+
+        final long finishTime = System.currentTimeMillis();
+        return report(expected, finishTime - startTime);
+    }
+
+    private static List<Range> split(ContractStore store, int rangeCount) {
+        int minContractId = Integer.MAX_VALUE;
+        for (int c = 0; c < store.contractCount(); c++) {
+            minContractId = Math.min(minContractId, store.contractId(c));
+        }
+        long from = store.contractCount() == 0 ? 0 : minContractId;
+        long to = ResumeJournal.maxContractId(store) + 1L;
+        long width = Math.max(1, (to - from + rangeCount - 1) / rangeCount);
+        List<Range> ranges = new ArrayList<>();
+        for (long start = from; start < to; start += width) {
+            ranges.add(new Range(ranges.size(), (int) start, (int) Math.min(to, start + width)));
+        }
+        return ranges;
+    }
+
+    /**
+     * Replaces dead workers while ranges are left, until the restarts are used up.
+     *
+     * @return false if ranges are left that no worker will ever take
+     */
+    private boolean awaitRanges(int port) throws IOException, InterruptedException {
+        while (remaining.get() > 0) {
+            TimeUnit.MILLISECONDS.sleep(POLL_MILLIS);
+            long alive;
+            synchronized (workers) {
+                alive = workers.stream().filter(Process::isAlive).count();
+            }
+            if (alive < Math.min(workerCount, remaining.get())) {
+                if (restarts.get() < maxRestarts) {
+                    restarts.incrementAndGet();
+                    System.err.println("Worker died, starting a replacement");
+                    startWorker(port);
+                } else if (alive == 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void startWorker(int port) throws IOException {
+        int number;
+        synchronized (workers) {
+            number = workers.size();
+        }
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(PartitionWorker.class.getName());
+        command.add(String.valueOf(port));
+        command.add(dataSet);
+        command.add(turnToTheDarkSide ? "dark" : "honest");
+        command.add(journalDirectory.toString());
+        Path log = journalDirectory.resolve("worker-" + number + ".log");
+        workers.add(new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start());
+    }
+
+    private void awaitWorkers() throws InterruptedException {
+        List<Process> processes;
+        synchronized (workers) {
+            processes = new ArrayList<>(workers);
+        }
+        for (Process process : processes) {
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private void accept(ServerSocket server) {
+        try {
+            while (!server.isClosed()) {
+                Socket socket = server.accept();
+                Thread handler = new Thread(() -> serve(socket), "partition-connection-" + socket.getPort());
+                handler.setDaemon(true);
+                handler.start();
+            }
+        } catch (SocketException e) {
+            // closed at the end of the run
+        } catch (IOException e) {
+            System.err.println("Could not accept workers: " + e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Hands out ranges to one worker until none are left. A range the worker does not report done goes back to the
+     * pending ones.
+     */
+    private void serve(Socket socket) {
+        Range assigned = null;
+        String worker = "unknown";
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                                                                          StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(),
+                                                                      StandardCharsets.UTF_8), true)) {
+            String ready = in.readLine();
+            if (ready == null || !ready.startsWith(READY)) {
+                return;
+            }
+            worker = ready.substring(READY.length()).trim();
+            while (remaining.get() > 0) {
+                assigned = pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (assigned == null) {
+                    // a range in flight elsewhere may still come back
+                    continue;
+                }
+                out.println(RANGE + " " + assigned.index + " " + assigned.fromContractId + " " + assigned.toContractId);
+                String done = in.readLine();
+                if (done == null) {
+                    break;
+                }
+                long[] counts = Arrays.stream(done.substring(DONE.length()).trim().split(" "))
+                                      .mapToLong(Long::parseLong).toArray();
+                results.set(assigned.index, counts);
+                remaining.decrementAndGet();
+                System.out.println("Worker " + worker + " finished range " + assigned.index + ", "
+                                           + remaining.get() + " left");
+                assigned = null;
+            }
+            out.println(STOP);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Lost worker " + worker + ": " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (assigned != null) {
+                System.err.println("Worker " + worker + " left range " + assigned.index + " unfinished, reassigning");
+                pending.add(assigned);
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing left to do with it
+            }
+        }
+    }
+
+    /**
+     * Counts of a resumed range are split between the attempts, see {@link tune.the.code.v2.InkassoBatch}: what the
+     * journal had as printed is skipped, what it had as collected only gets its print request.
+     */
+    private boolean report(long expected, long millis) {
+        long rangeExpected = 0;
+        long inkassoCount = 0;
+        long printRequestsCount = 0;
+        long printCount = 0;
+        for (int i = 0; i < results.length(); i++) {
+            long[] r = results.get(i);
+            long skipped = r[5];
+            long resumed = r[6];
+            rangeExpected += r[1];
+            inkassoCount += r[2] + resumed + skipped;
+            printRequestsCount += r[3] + skipped;
+            printCount += r[4] + skipped;
+        }
+        System.out.println("Inkasso count: " + inkassoCount);
+        System.out.println("Print requests count: " + printRequestsCount);
+        System.out.println("Print count: " + printCount);
+        System.out.println("Worker restarts: " + restarts.get());
+        boolean invariantHolds = inkassoCount == printRequestsCount && inkassoCount == expected
+                && rangeExpected == expected;
+        if (!invariantHolds) {
+            System.err.println("Probably incorrect computation, Inkasso & Print counts not equal expected results");
+        }
+        System.out.println("Task completed in " + millis + " ms");
+        return invariantHolds;
+    }
+
+    private static final class Range {
+
+        private final int index;
+        private final int fromContractId;
+        private final int toContractId;
+
+        private Range(int index, int fromContractId, int toContractId) {
+            this.index = index;
+            this.fromContractId = fromContractId;
+            this.toContractId = toContractId;
+        }
+    }
+}
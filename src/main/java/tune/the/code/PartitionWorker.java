@@ -0,0 +1,110 @@
+package tune.the.code;
+
+import dataprovider.DataSet;
+import tune.the.code.v2.BatchMetrics;
+import tune.the.code.v2.ContractStore;
+import tune.the.code.v2.InkassoBatch;
+import tune.the.code.v2.MessageQueue;
+import tune.the.code.v2.Print;
+import tune.the.code.v2.PrintInputData;
+import tune.the.code.v2.ProviderCaches;
+import tune.the.code.v2.ResumeJournal;
+import tune.the.code.v2.WaitStrategy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Worker process of the {@link PartitionCoordinator}. Connects to the coordinator, then runs one inkasso/print
+ * pipeline per contract id range it is handed and reports the range's counts back, until it is told to stop.
+ * <p>
+ * Arguments: coordinator port, data set (see {@link BenchmarkTrial}), {@code honest} or {@code dark}, journal
+ * directory.
+ *
+ * @since 18.10.2026
+ */
+public final class PartitionWorker {
+
+    private final ContractStore store;
+    private final boolean turnToTheDarkSide;
+    private final Path journalDirectory;
+
+    private PartitionWorker(ContractStore store, boolean turnToTheDarkSide, Path journalDirectory) {
+        this.store = store;
+        this.turnToTheDarkSide = turnToTheDarkSide;
+        this.journalDirectory = journalDirectory;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 4) {
+            System.err.println("Usage: PartitionWorker <coordinator port> <data set> honest|dark <journal directory>");
+            System.exit(2);
+        }
+        DataSet.init(BenchmarkTrial.dataSet(args[1]));
+        PartitionWorker worker = new PartitionWorker(ContractStore.build(new ProviderCaches()), "dark".equals(args[2]),
+                                                     Paths.get(args[3]));
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0]));
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                                                                          StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(),
+                                                                      StandardCharsets.UTF_8), true)) {
+            out.println(PartitionCoordinator.READY + " " + ManagementFactory.getRuntimeMXBean().getName());
+            String line;
+            while ((line = in.readLine()) != null && line.startsWith(PartitionCoordinator.RANGE)) {
+                String[] range = line.split(" ");
+                out.println(worker.runRange(Integer.parseInt(range[1]), Integer.parseInt(range[2]),
+                                            Integer.parseInt(range[3])));
+            }
+        }
+        // the print workers of the last range may still be winding down
+        System.exit(0);
+    }
+
+    /**
+     * Every range has a journal of its own, so that the worker that takes over a range from a dead one neither
+     * collects nor prints twice.
+     *
+     * @return the {@link PartitionCoordinator#DONE} line for the range
+     */
+    private String runRange(int rangeIndex, int fromContractId, int toContractId) {
+        System.out.println("Range " + rangeIndex + ": contracts " + fromContractId + " to " + toContractId);
+        MessageQueue<PrintInputData> queue = MessageQueue.create(MessageQueue.Type.RING_BUFFER,
+                                                                 Print.PRINT_QUEUE_CAPACITY, WaitStrategy.BLOCKING);
+        BatchMetrics metrics = new BatchMetrics();
+        ResumeJournal journal = new ResumeJournal(
+                journalDirectory.resolve("range-" + fromContractId + "-" + toContractId + ".journal"));
+        InkassoBatch inkassoBatch = InkassoBatch.builder(turnToTheDarkSide).printQueue(queue).metrics(metrics)
+                                                .journal(journal).build();
+        Print print = Print.builder(turnToTheDarkSide).messageQueue(queue).metrics(metrics).journal(journal).build();
+        print.run();
+        inkassoBatch.runInkassoBatch(store, fromContractId, toContractId);
+        print.stop();
+
+        return PartitionCoordinator.DONE + " " + rangeIndex + " " + expected(fromContractId, toContractId) + " "
+                + inkassoBatch.getInkassoCount() + " " + inkassoBatch.getPrintRequestsCount() + " "
+                + print.getPrintCount() + " " + inkassoBatch.getSkippedCount() + " "
+                + inkassoBatch.getResumedPrintCount();
+    }
+
+    private int expected(int fromContractId, int toContractId) {
+        int expected = 0;
+        for (int c = 0; c < store.contractCount(); c++) {
+            int contractId = store.contractId(c);
+            if (contractId >= fromContractId && contractId < toContractId
+                    && store.accountIndexOfContract(c) != ContractStore.NOT_FOUND) {
+                expected++;
+            }
+        }
+        return expected;
+    }
+}
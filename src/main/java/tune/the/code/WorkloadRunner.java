@@ -0,0 +1,213 @@
+package tune.the.code;
+
+import config.Config;
+import tune.the.code.v2.BatchMetrics;
+import tune.the.code.v2.ContractStore;
+import tune.the.code.v2.ExecutionBackend;
+import tune.the.code.v2.InkassoBatch;
+import tune.the.code.v2.MessageQueue;
+import tune.the.code.v2.PrimitivePrint;
+import tune.the.code.v2.Print;
+import tune.the.code.v2.PrintInputData;
+import tune.the.code.v2.PrintInputDataCodec;
+import tune.the.code.v2.PrintRequestChannel;
+import tune.the.code.v2.ReactiveBatch;
+import tune.the.code.v2.SimulatedSystem;
+import tune.the.code.v2.WaitStrategy;
+import tune.the.code.v2.WorkloadConfig;
+import tune.the.code.v2.WorkloadGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the v2 pipelines over a data set of the {@link WorkloadGenerator} against {@link SimulatedSystem}s instead of
+ * the provider data and the real systems, so that sizes, skew, latencies and failure rates beyond those of
+ * {@link Config} can be measured and the measurement repeated. Everything is taken from one properties file: the
+ * {@code workload.*} keys of {@link WorkloadConfig#fromProperties}, and the {@code inkasso.*} and {@code print.*}
+ * keys of {@link SimulatedSystem#fromProperties}. System properties with these prefixes override the file.
+ * <pre>
+ * java -cp target/classes:src/main/resources/inkasso-system.jar tune.the.code.WorkloadRunner \
+ *     --config workload.properties --pipeline queue,primitive,spill,flow --repetitions 3
+ * </pre>
+ * Unlike the {@link BenchmarkRunner}, all trials run in this JVM, the generator does not depend on
+ * {@link dataprovider.DataSet}. Prints one CSV line per trial at the end.
+ *
+ * @since 18.10.2026
+ */
+public final class WorkloadRunner {
+
+    private static final List<String> PIPELINES = Collections.unmodifiableList(
+            Arrays.asList("queue", "primitive", "spill", "flow"));
+    private static final List<String> PREFIXES = Arrays.asList("workload.", "inkasso.", "print.");
+    private static final int SPILL_HIGH_WATER_MARK = 64;
+
+    private final Properties properties;
+    private final List<String> pipelines;
+    private final int repetitions;
+
+    /**
+     * @param pipelines some of {@code queue}, {@code primitive}, {@code spill} and {@code flow}
+     */
+    public WorkloadRunner(Properties properties, List<String> pipelines, int repetitions) {
+        if (repetitions < 1) {
+            throw new IllegalArgumentException("repetitions must be positive");
+        }
+        for (String pipeline : pipelines) {
+            if (!PIPELINES.contains(pipeline)) {
+                throw new IllegalArgumentException("Unknown pipeline " + pipeline + ", expected one of " + PIPELINES);
+            }
+        }
+        this.properties = properties;
+        this.pipelines = pipelines;
+        this.repetitions = repetitions;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Properties properties = new Properties();
+        List<String> pipelines = Collections.singletonList("queue");
+        int repetitions = 1;
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--config":
+                    try (InputStream in = Files.newInputStream(Paths.get(required(args[i], value)))) {
+                        properties.load(in);
+                    }
+                    break;
+                case "--pipeline":
+                    pipelines = Arrays.asList(required(args[i], value).split(","));
+                    break;
+                case "--repetitions":
+                    repetitions = Integer.parseInt(required(args[i], value));
+                    break;
+                default:
+                    usage("Unknown option " + args[i]);
+            }
+            i++;
+        }
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (PREFIXES.stream().anyMatch(key::startsWith)) {
+                properties.setProperty(key, System.getProperty(key));
+            }
+        }
+
+        new WorkloadRunner(properties, pipelines, repetitions).run();
+        // the batches leave their idle worker threads behind
+        System.exit(0);
+    }
+
+    private static String required(String option, String value) {
+        if (value == null) {
+            usage(option + " needs a value");
+        }
+        return value;
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Usage: WorkloadRunner [--config properties] [--pipeline " + String.join("|", PIPELINES)
+                                   + "[,...]] [--repetitions n]");
+        System.exit(2);
+    }
+
+    /**
+     * Generates the data set once and runs the pipelines on it, interleaved per repetition like the
+     * {@link BenchmarkRunner} does. Each trial gets systems of its own, so their counters start at zero.
+     */
+    public void run() {
+        WorkloadConfig config = WorkloadConfig.fromProperties(
+                properties, WorkloadConfig.of(Config.DATA_SET_SIZE_MEDIUM));
+        long start = System.nanoTime();
+        ContractStore store = WorkloadGenerator.generate(config);
+        long expected = WorkloadGenerator.contractsWithBankAccounts(store);
+        System.err.println("Generated " + config + " in "
+                                   + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms, "
+                                   + expected + " contracts with account");
+
+        // the batches report to System.out as well, the results come after them
+        List<String> csv = new ArrayList<>();
+        csv.add("pipeline,trial,expected,inkassoCount,printRequestsCount,printCount,inkassoFailures,printFailures,"
+                        + "wallMillis,contractsPerSecond");
+        for (int trial = 1; trial <= repetitions; trial++) {
+            for (String pipeline : pipelines) {
+                SimulatedSystem inkasso = SimulatedSystem.fromProperties(properties, "inkasso",
+                                                                         SimulatedSystem.forInkasso());
+                SimulatedSystem print = SimulatedSystem.fromProperties(properties, "print",
+                                                                       SimulatedSystem.forPrint());
+                long trialStart = System.nanoTime();
+                int[] counts = runTrial(pipeline, store, inkasso, print);
+                long wallNanos = System.nanoTime() - trialStart;
+                System.err.println(inkasso.getStatistics());
+                System.err.println(print.getStatistics());
+                csv.add(String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%d,%d,%d,%d,%.1f", pipeline, trial, expected,
+                                      counts[0], counts[1], counts[2], inkasso.getFailureCount(),
+                                      print.getFailureCount(), TimeUnit.NANOSECONDS.toMillis(wallNanos),
+                                      expected * 1e9 / wallNanos));
+            }
+        }
+        csv.forEach(System.out::println);
+    }
+
+    /**
+     * Honest wiring against the simulated systems, as many inkasso threads and print workers as the systems have
+     * permits.
+     *
+     * @return inkasso count, print requests count and print count
+     */
+    private static int[] runTrial(String pipeline, ContractStore store, SimulatedSystem inkasso,
+                                  SimulatedSystem print) {
+        BatchMetrics metrics = new BatchMetrics();
+        if (pipeline.equals("flow")) {
+            ReactiveBatch batch = new ReactiveBatch(false, inkasso, print, inkasso.getPermits(), print.getPermits(),
+                                                    ReactiveBatch.DEFAULT_PREFETCH, ReactiveBatch.DEFAULT_BUFFER_SIZE,
+                                                    ExecutionBackend.best(), metrics);
+            batch.runInkassoBatch(store);
+            return new int[]{batch.getInkassoCount(), batch.getPrintRequestsCount(), batch.getPrintCount()};
+        }
+        if (pipeline.equals("primitive")) {
+            MessageQueue<PrintInputData> unused = MessageQueue.create(MessageQueue.Type.LINKED, Integer.MAX_VALUE,
+                                                                      WaitStrategy.BLOCKING);
+            InkassoBatch inkassoBatch = inkassoBatch(unused, store, inkasso, metrics);
+            PrintRequestChannel channel = new PrintRequestChannel(Print.PRINT_QUEUE_CAPACITY);
+            PrimitivePrint primitivePrint = new PrimitivePrint(false, channel, store, print, print.getPermits(),
+                                                               ExecutionBackend.best(), metrics);
+            primitivePrint.run();
+            inkassoBatch.runInkassoBatch(store, channel);
+            primitivePrint.stop();
+            return new int[]{inkassoBatch.getInkassoCount(), inkassoBatch.getPrintRequestsCount(),
+                             primitivePrint.getPrintCount()};
+        }
+        MessageQueue<PrintInputData> queue = pipeline.equals("spill")
+                                             ? MessageQueue.createSpilling(SPILL_HIGH_WATER_MARK,
+                                                                           PrintInputDataCodec.INSTANCE,
+                                                                           Paths.get(System.getProperty(
+                                                                                   "java.io.tmpdir")))
+                                             : MessageQueue.create(MessageQueue.Type.RING_BUFFER,
+                                                                   Print.PRINT_QUEUE_CAPACITY, WaitStrategy.BLOCKING);
+        InkassoBatch inkassoBatch = inkassoBatch(queue, store, inkasso, metrics);
+        Print queuePrint = Print.builder(false).messageQueue(queue).printService(print)
+                                .concurrency(print.getPermits()).metrics(metrics).build();
+        queuePrint.run();
+        inkassoBatch.runInkassoBatch(store);
+        queuePrint.stop();
+        return new int[]{inkassoBatch.getInkassoCount(), inkassoBatch.getPrintRequestsCount(),
+                         queuePrint.getPrintCount()};
+    }
+
+    private static InkassoBatch inkassoBatch(MessageQueue<PrintInputData> queue, ContractStore store,
+                                             SimulatedSystem inkasso, BatchMetrics metrics) {
+        return InkassoBatch.builder(false).printQueue(queue).inkassoService(inkasso)
+                           .concurrency(inkasso.getPermits())
+                           .providerCaches(WorkloadGenerator.providerCaches(store)).metrics(metrics).build();
+    }
+}
@@ -7,6 +7,7 @@ import datamodel.PrintInput;
 import dataprovider.BankProvider;
 import dataprovider.ContractProvider;
 import system.PrintSystem;
+import tune.the.code.v2.ProviderCache;
 import utils.Utils;
 
 import java.util.Optional;
@@ -15,17 +16,16 @@ public class Print implements Runnable {
 
     public static final int WAIT_ON_PRINT_QUEUE_MS = 1000;
 
-    private static void printInkassoConfirmation(final int bankId, final BankAccount bankAccount,
-                                                 final int contractId) {
-        final Optional<Contract> contractOptional = ContractProvider.getContracts().stream()
-                                                                    .filter(c -> c.getId() == contractId).findFirst();
+    private void printInkassoConfirmation(final int bankId, final BankAccount bankAccount,
+                                          final int contractId) {
+        final Optional<Contract> contractOptional = findContract(contractId);
         if (!contractOptional.isPresent()) {
             System.err.println("Cannot find contract for account " + bankAccount.getId());
             return;
         }
 
         final Contract contract = contractOptional.get();
-        final Bank bank = BankProvider.getBankById(bankId);
+        final Bank bank = bankCache == null ? BankProvider.getBankById(bankId) : bankCache.get(bankId);
         final boolean printSuccess = PrintSystem.doPrintInkassoConfirmation(bank.getName(), bankAccount,
                 contract.getPolicyHolderName());
         if (!printSuccess) {
@@ -35,12 +35,32 @@ public class Print implements Runnable {
 
     }
 
+    private Optional<Contract> findContract(final int contractId) {
+        if (contractCache == null) {
+            return ContractProvider.getContracts().stream()
+                                   .filter(c -> c.getId() == contractId).findFirst();
+        }
+        return Optional.ofNullable(contractCache.get(contractId));
+    }
+
     private final MessageQueue<PrintInput> messageQueue;
+    private final ProviderCache<Contract> contractCache;
+    private final ProviderCache<Bank> bankCache;
 
     private boolean run = true;
 
     public Print() {
+        this(null, null);
+    }
+
+    /**
+     * @param contractCache if null, every print scans {@link ContractProvider#getContracts()}
+     * @param bankCache     if null, every print calls {@link BankProvider#getBankById(int)}
+     */
+    public Print(final ProviderCache<Contract> contractCache, final ProviderCache<Bank> bankCache) {
         this.messageQueue = MessageQueue.getInstance(PrintInput.class);
+        this.contractCache = contractCache;
+        this.bankCache = bankCache;
     }
 
     private void processNextElement() {
@@ -0,0 +1,192 @@
+package tune.the.code.v2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What {@link Print} and {@link PrimitivePrint} have in common: a fixed set of print workers draining one input,
+ * the count of successful prints, and the shutdown that closes the input, waits for the workers and reports.
+ *
+ * @since 18.10.2026
+ */
+abstract class AbstractPrint implements Runnable {
+
+    final LongAdder printCounter = new LongAdder();
+    final BatchMetrics metrics;
+
+    private final List<Worker> workers = new ArrayList<>();
+    private final AtomicInteger runningWorkers;
+    private final CompletableFuture<Integer> completion = new CompletableFuture<>();
+    private final boolean turnToTheDarkSide;
+    private final ExecutionBackend executionBackend;
+
+    AbstractPrint(boolean turnToTheDarkSide, int concurrency, ExecutionBackend executionBackend,
+                  BatchMetrics metrics) {
+        this.turnToTheDarkSide = turnToTheDarkSide;
+        this.executionBackend = executionBackend;
+        this.metrics = metrics;
+        this.runningWorkers = new AtomicInteger(concurrency);
+    }
+
+    /**
+     * For the constructors of the subclasses, once per worker.
+     */
+    final void addWorker(Worker worker) {
+        workers.add(worker);
+    }
+
+    /**
+     * Completes with the number of successful prints as soon as the last worker has printed its last confirmation,
+     * i.e. once the input has been closed and drained.
+     */
+    public CompletableFuture<Integer> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * @return successful prints so far, may be read while printing is in progress
+     */
+    public int getPrintCount() {
+        return printCounter.intValue();
+    }
+
+    final void workerFinished() {
+        if (runningWorkers.decrementAndGet() == 0) {
+            completion.complete(printCounter.intValue());
+        }
+    }
+
+    @Override
+    public void run() {
+        metrics.startReporter();
+        workers.forEach(worker -> worker.start(executionBackend));
+    }
+
+    /**
+     * Closes the input and waits until everything pushed before has been printed. Must only be called once all
+     * producers are done. Waits for the workers even if the caller is interrupted, the journal and the fingerprint
+     * index must not be closed under them, and sets the interrupt flag again afterwards.
+     */
+    public void stop() {
+        // an interrupted inkasso batch keeps the flag, its contracts are not all through
+        boolean interrupted = Thread.interrupted();
+        boolean failed = false;
+        while (true) {
+            try {
+                closeInput();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        while (true) {
+            try {
+                completion.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+                failed = true;
+                break;
+            }
+        }
+        boolean completed = !interrupted && !failed;
+
+        LogSink.getDefault().flush();
+        // the completion makes the workers' counters visible here
+        workers.forEach(worker -> System.out.println(worker.getStatistics()));
+        drained(completed);
+        metrics.stopReporter();
+        System.out.println(metrics.report());
+        metrics.exportJson();
+
+        // only the process-wide print speaks for the process-wide print system, others keep their count to themselves
+        if (turnToTheDarkSide && speaksForPrintSystem()) {
+            Print.overridePrintCount(printCounter.intValue());
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Marks the end of the input for the workers.
+     */
+    abstract void closeInput() throws InterruptedException;
+
+    /**
+     * @return whether this print consumes the process-wide print queue, whose count {@link system.PrintSystem}
+     * reports in dark mode
+     */
+    abstract boolean speaksForPrintSystem();
+
+    /**
+     * Called by {@link #stop()} once the workers are done, before the metrics are reported.
+     *
+     * @param completed whether the input was closed and drained without interruption
+     */
+    void drained(boolean completed) {
+    }
+
+    /**
+     * One print worker. Takes batches of at most a fair share of the backlog, so that near the end of the run one
+     * worker does not sit on a large batch while the others are idle.
+     */
+    abstract static class Worker implements Runnable {
+
+        final int id;
+        private final int workerCount;
+        private final Runnable onFinished;
+
+        // only written by the worker thread
+        private long batchCount;
+        private long messageCount;
+
+        Worker(int id, int workerCount, Runnable onFinished) {
+            this.id = id;
+            this.workerCount = workerCount;
+            this.onFinished = onFinished;
+        }
+
+        final void start(ExecutionBackend executionBackend) {
+            executionBackend.start("print-worker-" + id, this);
+        }
+
+        @Override
+        public final void run() {
+            try {
+                consume();
+            } catch (final InterruptedException e) {
+                System.err.println("Print worker " + id + " was interrupted");
+            } finally {
+                onFinished.run();
+            }
+        }
+
+        /**
+         * Prints until the input is closed and drained.
+         */
+        abstract void consume() throws InterruptedException;
+
+        final int nextBatchSize(int backlog) {
+            int fairShare = backlog / workerCount;
+            return Math.max(1, Math.min(Print.MAX_BATCH_SIZE, fairShare));
+        }
+
+        final void countBatch(int size) {
+            batchCount++;
+            messageCount += size;
+        }
+
+        final String getStatistics() {
+            double averageBatchSize = batchCount == 0 ? 0 : (double) messageCount / batchCount;
+            return String.format("Print worker %d: %d messages in %d batches, average batch size %.2f",
+                                 id, messageCount, batchCount, averageBatchSize);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package tune.the.code.v2;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the calls in flight to a downstream system without knowing its capacity up front. The limit is learned
+ * from the call latency, in the spirit of TCP Vegas: the shortest latency seen is what a call takes without
+ * waiting, and by Little's law {@code inFlight * (1 - minRtt / rtt)} of the calls in flight are waiting for the
+ * system rather than being served. Once there is such a queue, the limit drops to {@code inFlight * minRtt / rtt},
+ * the number of calls the system actually served. While there is none, the limit grows by one every
+ * {@value #PROBE_INTERVAL_WINDOWS} windows. It thus settles at the knee of the throughput curve, where adding
+ * callers only adds waiting. Until the first queue shows up, the limit doubles per window instead, so that a run
+ * does not spend long below the capacity.
+ * <p>
+ * The minimum latency is learned again every {@value #MIN_RTT_RESET_WINDOWS} windows, so that a downstream that got
+ * slower for good is not taken for a congested one.
+ *
+ * @since 18.10.2026
+ */
+public class AdaptiveConcurrencyLimit {
+
+    public static final int DEFAULT_INITIAL_LIMIT = 1;
+    public static final int DEFAULT_MAX_LIMIT = 64;
+
+    private static final int MIN_WINDOW_SAMPLES = 4;
+    private static final int MIN_RTT_RESET_WINDOWS = 50;
+    private static final int PROBE_INTERVAL_WINDOWS = 4;
+    private static final double QUEUE_THRESHOLD = 0.5;
+
+    private final String name;
+    private final int maxLimit;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition belowLimit = lock.newCondition();
+
+    // guarded by lock, volatile for the getters
+    private volatile int limit;
+    private volatile int inFlight;
+    private volatile long minRttNanos;
+    private volatile long rttNanos;
+
+    // the current window, guarded by lock
+    private int windowSamples;
+    private long windowRttSum;
+    private long windowMinRtt = Long.MAX_VALUE;
+    private int windowMaxInFlight;
+    private int windowsSinceMinRttReset;
+    private boolean slowStart = true;
+    private int windowsWithoutQueue;
+
+    public AdaptiveConcurrencyLimit(String name) {
+        this(name, DEFAULT_INITIAL_LIMIT, DEFAULT_MAX_LIMIT);
+    }
+
+    /**
+     * @param maxLimit upper bound of the limit, callers need at least as many threads to ever reach it
+     */
+    public AdaptiveConcurrencyLimit(String name, int initialLimit, int maxLimit) {
+        if (initialLimit < 1 || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Need 1 <= initialLimit <= maxLimit");
+        }
+        this.name = name;
+        this.limit = initialLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Blocks while the limit is reached.
+     *
+     * @return the start of the call, to be handed to {@link #release(long)}
+     */
+    public long acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= limit) {
+                belowLimit.await();
+            }
+            inFlight++;
+            windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+        } finally {
+            lock.unlock();
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Ends a call, whether it succeeded or not. A failed call took its time as well.
+     */
+    public void release(long callStartNanos) {
+        long rtt = System.nanoTime() - callStartNanos;
+        lock.lock();
+        try {
+            inFlight--;
+            int previousLimit = limit;
+            sample(rtt);
+            if (limit > previousLimit) {
+                belowLimit.signalAll();
+            } else {
+                belowLimit.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void sample(long rtt) {
+        windowSamples++;
+        windowRttSum += rtt;
+        windowMinRtt = Math.min(windowMinRtt, rtt);
+        // at least two rounds of every call slot, so that the average is not one unlucky call
+        if (windowSamples < Math.max(MIN_WINDOW_SAMPLES, 2 * limit)) {
+            return;
+        }
+
+        long averageRtt = windowRttSum / windowSamples;
+        if (minRttNanos == 0 || windowMinRtt < minRttNanos || windowsSinceMinRttReset >= MIN_RTT_RESET_WINDOWS) {
+            minRttNanos = windowMinRtt;
+            windowsSinceMinRttReset = 0;
+        } else {
+            windowsSinceMinRttReset++;
+        }
+        rttNanos = averageRtt;
+
+        double gradient = Math.min(1.0, (double) minRttNanos / Math.max(1, averageRtt));
+        double queued = windowMaxInFlight * (1 - gradient);
+        if (queued >= QUEUE_THRESHOLD) {
+            limit = Math.max(1, (int) Math.round(windowMaxInFlight * gradient));
+            slowStart = false;
+            windowsWithoutQueue = 0;
+        } else if (windowMaxInFlight >= limit && limit < maxLimit) {
+            // only probe upwards if the limit was what held the callers back
+            if (slowStart) {
+                limit = Math.min(maxLimit, 2 * limit);
+            } else if (++windowsWithoutQueue >= PROBE_INTERVAL_WINDOWS) {
+                limit++;
+                windowsWithoutQueue = 0;
+            }
+        }
+
+        windowSamples = 0;
+        windowRttSum = 0;
+        windowMinRtt = Long.MAX_VALUE;
+        windowMaxInFlight = inFlight;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return latency of a call that did not wait, 0 before the first window is complete
+     */
+    public long getMinRtt(TimeUnit unit) {
+        return unit.convert(minRttNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return average latency of the last complete window, 0 before the first one
+     */
+    public long getRtt(TimeUnit unit) {
+        return unit.convert(rttNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Lets the metrics reporter follow the limit as it converges.
+     */
+    public void registerGauges(BatchMetrics metrics) {
+        metrics.registerGauge(name + ".limit", this::getLimit);
+        metrics.registerGauge(name + ".limitedInFlight", this::getInFlight);
+        metrics.registerGauge(name + ".minRttMicros", () -> getMinRtt(TimeUnit.MICROSECONDS));
+        metrics.registerGauge(name + ".rttMicros", () -> getRtt(TimeUnit.MICROSECONDS));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s limit: %d of at most %d, %d in flight, min rtt %d us, rtt %d us", name, limit,
+                             maxLimit, inFlight, getMinRtt(TimeUnit.MICROSECONDS), getRtt(TimeUnit.MICROSECONDS));
+    }
+}
@@ -0,0 +1,253 @@
+package tune.the.code.v2;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-stage latencies and gauges of one inkasso/print run. The hot path only touches striped counters and
+ * histogram buckets, the gauges are sampled by a background reporter so that producers and consumers never pay for
+ * them.
+ *
+ * @since 18.10.2026
+ */
+public class BatchMetrics {
+
+    public static final long DEFAULT_SAMPLING_PERIOD_MILLIS = 100;
+
+    /**
+     * System property with the file the default metrics are exported to at the end of a run.
+     */
+    public static final String JSON_PATH_PROPERTY = "batch.metrics.json";
+
+    private static final BatchMetrics DEFAULT = new BatchMetrics();
+
+    static {
+        String jsonPath = System.getProperty(JSON_PATH_PROPERTY);
+        if (jsonPath != null && !jsonPath.isEmpty()) {
+            DEFAULT.setJsonPath(Paths.get(jsonPath));
+        }
+    }
+
+    /**
+     * Shared by the default constructors of {@link InkassoBatch} and {@link Print}, like their default queue. Exported
+     * to the file named by the system property {@value #JSON_PATH_PROPERTY}, if it is set.
+     */
+    public static BatchMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    private final LatencyHistogram providerLoad = new LatencyHistogram("provider.load");
+    private final LatencyHistogram inkassoSlotWait = new LatencyHistogram("inkasso.slotWait");
+    private final LatencyHistogram inkassoCall = new LatencyHistogram("inkasso.call");
+    private final LatencyHistogram queueResidence = new LatencyHistogram("print.queueResidence");
+    private final LatencyHistogram printCall = new LatencyHistogram("print.call");
+    private final LatencyHistogram endToEnd = new LatencyHistogram("contract.endToEnd");
+
+    private final LongAdder inkassoInFlight = new LongAdder();
+    private final LongAdder printInFlight = new LongAdder();
+
+    private final List<Gauge> gauges = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService reporter;
+    private volatile Path jsonPath;
+
+    public BatchMetrics() {
+        registerGauge("inkasso.inFlight", inkassoInFlight::sum);
+        registerGauge("print.inFlight", printInFlight::sum);
+    }
+
+    /**
+     * Bulk load of one provider.
+     */
+    public LatencyHistogram providerLoad() {
+        return providerLoad;
+    }
+
+    /**
+     * Time from handing a contract to the inkasso scheduler until a thread starts on it. The scheduler is sized to
+     * the inkasso system's permits, so this is the wait for its semaphore moved in front of the call.
+     */
+    public LatencyHistogram inkassoSlotWait() {
+        return inkassoSlotWait;
+    }
+
+    public LatencyHistogram inkassoCall() {
+        return inkassoCall;
+    }
+
+    /**
+     * Time from creating a print request until a print worker picks it up.
+     */
+    public LatencyHistogram queueResidence() {
+        return queueResidence;
+    }
+
+    public LatencyHistogram printCall() {
+        return printCall;
+    }
+
+    /**
+     * Time from handing a contract to the batch until its confirmation is printed, for every printed confirmation.
+     */
+    public LatencyHistogram endToEnd() {
+        return endToEnd;
+    }
+
+    public LongAdder inkassoInFlight() {
+        return inkassoInFlight;
+    }
+
+    public LongAdder printInFlight() {
+        return printInFlight;
+    }
+
+    public List<LatencyHistogram> getHistograms() {
+        return Arrays.asList(providerLoad, inkassoSlotWait, inkassoCall, queueResidence, printCall, endToEnd);
+    }
+
+    /**
+     * Replaces a gauge registered before under the same name, so a pipeline that is set up again on the same
+     * metrics does not keep sampling its old queue.
+     *
+     * @param source read from the reporter thread only, must be thread-safe
+     */
+    public synchronized void registerGauge(String name, LongSupplier source) {
+        gauges.removeIf(gauge -> gauge.name.equals(name));
+        gauges.add(new Gauge(name, source));
+    }
+
+    public synchronized void startReporter() {
+        startReporter(DEFAULT_SAMPLING_PERIOD_MILLIS);
+    }
+
+    /**
+     * Starts sampling the gauges, does nothing if the reporter is already running.
+     */
+    public synchronized void startReporter(long periodMillis) {
+        if (reporter != null) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(new InkassoScheduler.WorkerThreadFactory("metrics-"));
+        reporter.scheduleAtFixedRate(this::sample, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops sampling and takes a last sample, so that the gauges include the state at the end of the run.
+     */
+    public synchronized void stopReporter() {
+        if (reporter == null) {
+            return;
+        }
+        reporter.shutdown();
+        try {
+            reporter.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        reporter = null;
+        sample();
+    }
+
+    private void sample() {
+        gauges.forEach(Gauge::sample);
+    }
+
+    public String report() {
+        StringBuilder sb = new StringBuilder("Stage metrics:");
+        getHistograms().forEach(histogram -> sb.append(System.lineSeparator()).append("  ").append(histogram));
+        gauges.forEach(gauge -> sb.append(System.lineSeparator()).append("  ").append(gauge));
+        return sb.toString();
+    }
+
+    public String toJson() {
+        List<String> histograms = new ArrayList<>();
+        getHistograms().forEach(h -> histograms.add("\"" + h.getName() + "\":" + h.toJson()));
+        List<String> gaugeEntries = new ArrayList<>();
+        gauges.forEach(g -> gaugeEntries.add("\"" + g.name + "\":" + g.toJson()));
+        return "{\"histograms\":{" + String.join(",", histograms) + "},\"gauges\":{"
+                + String.join(",", gaugeEntries) + "}}";
+    }
+
+    public void writeJson(Path path) throws IOException {
+        Files.write(path, toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param jsonPath where {@link #exportJson()} writes to, null for nowhere
+     */
+    public void setJsonPath(Path jsonPath) {
+        this.jsonPath = jsonPath;
+    }
+
+    public Path getJsonPath() {
+        return jsonPath;
+    }
+
+    /**
+     * Writes the metrics to the configured file, if there is one. Called by {@link Print#stop()} at the end of a run.
+     */
+    public void exportJson() {
+        Path path = jsonPath;
+        if (path == null) {
+            return;
+        }
+        try {
+            writeJson(path);
+        } catch (IOException e) {
+            System.err.println("Could not write the metrics to " + path + ": " + e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Sampled by the reporter thread and once more by {@link #stopReporter()}.
+     */
+    private static class Gauge {
+
+        private final String name;
+        private final LongSupplier source;
+
+        private volatile long samples;
+        private volatile long sum;
+        private volatile long max;
+        private volatile long last;
+
+        private Gauge(String name, LongSupplier source) {
+            this.name = name;
+            this.source = source;
+        }
+
+        private synchronized void sample() {
+            long value = source.getAsLong();
+            last = value;
+            max = Math.max(max, value);
+            sum += value;
+            samples++;
+        }
+
+        private double getMean() {
+            return samples == 0 ? 0 : (double) sum / samples;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-22s samples=%d mean=%.1f max=%d last=%d", name, samples, getMean(), max, last);
+        }
+
+        private String toJson() {
+            return String.format(Locale.ROOT, "{\"samples\":%d,\"mean\":%.2f,\"max\":%d,\"last\":%d}",
+                                 samples, getMean(), max, last);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package tune.the.code.v2;
+
+/**
+ * One {@link InkassoBatch} and {@link Print} pair with its own queue, metrics and counters, so that several of them
+ * can run in the same process, e.g. one per region or client. Nothing of it is registered anywhere, and in dark mode
+ * it does not touch the count of {@link system.PrintSystem}. The pipelines share the downstream systems through one
+ * {@link FairShareScheduler} per system, in which each pipeline is a tenant with its own weight.
+ *
+ * @since 18.10.2026
+ */
+public class BatchPipeline {
+
+    private final String name;
+    private final FairShareScheduler.Tenant inkassoTenant;
+    private final FairShareScheduler.Tenant printTenant;
+    private final BatchMetrics metrics = new BatchMetrics();
+    private final InkassoBatch inkassoBatch;
+    private final Print print;
+
+    public BatchPipeline(String name, boolean turnToTheDarkSide, FairShareScheduler inkassoPermits,
+                         FairShareScheduler printPermits, int weight) {
+        this(name, turnToTheDarkSide, turnToTheDarkSide ? InkassoService.DARK_SIDE : InkassoService.SYSTEM,
+             turnToTheDarkSide ? PrintService.DARK_SIDE : PrintService.SYSTEM, inkassoPermits, printPermits, weight);
+    }
+
+    /**
+     * @param inkassoPermits shared with the other pipelines, the pipeline calls {@code inkassoService} only with one
+     *                       of its permits
+     * @param printPermits   likewise for {@code printService}, also the number of print workers
+     * @param weight         share of the permits relative to the other pipelines
+     */
+    public BatchPipeline(String name, boolean turnToTheDarkSide, InkassoService inkassoService,
+                         PrintService printService, FairShareScheduler inkassoPermits,
+                         FairShareScheduler printPermits, int weight) {
+        this.name = name;
+        this.inkassoTenant = inkassoPermits.register(name, weight);
+        this.printTenant = printPermits.register(name, weight);
+        inkassoTenant.registerGauges(metrics);
+        printTenant.registerGauges(metrics);
+        MessageQueue<PrintInputData> queue = MessageQueue.create(MessageQueue.Type.RING_BUFFER,
+                                                                 Print.PRINT_QUEUE_CAPACITY, WaitStrategy.BLOCKING);
+        this.inkassoBatch = InkassoBatch.builder(turnToTheDarkSide)
+                                        .printQueue(queue)
+                                        .inkassoService(InkassoService.sharing(inkassoService, inkassoTenant))
+                                        .concurrency(inkassoPermits.getPermits())
+                                        .metrics(metrics)
+                                        .build();
+        // a worker per permit, more would only wait for the tenant
+        this.print = Print.builder(turnToTheDarkSide)
+                          .messageQueue(queue)
+                          .printService(PrintService.sharing(printService, printTenant))
+                          .concurrency(printPermits.getPermits())
+                          .metrics(metrics)
+                          .build();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public BatchMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int getInkassoCount() {
+        return inkassoBatch.getInkassoCount();
+    }
+
+    public int getPrintRequestsCount() {
+        return inkassoBatch.getPrintRequestsCount();
+    }
+
+    /**
+     * @return successful prints of this pipeline so far
+     */
+    public int getPrintCount() {
+        return print.getPrintCount();
+    }
+
+    /**
+     * Runs all contracts of {@code store}.
+     */
+    public void run(ContractStore store) {
+        run(store, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Runs the contracts with {@code fromContractId <= id < toContractId} and waits until they are printed. A
+     * pipeline runs once, it leaves the schedulers at the end.
+     */
+    public void run(ContractStore store, int fromContractId, int toContractId) {
+        try {
+            print.run();
+            inkassoBatch.runInkassoBatch(store, fromContractId, toContractId);
+            print.stop();
+            System.out.println(inkassoTenant.getStatistics());
+            System.out.println(printTenant.getStatistics());
+        } finally {
+            inkassoTenant.close();
+            printTenant.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BatchPipeline{" + name + ", weight " + inkassoTenant.getWeight() + "}";
+    }
+}
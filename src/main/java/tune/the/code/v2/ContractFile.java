@@ -0,0 +1,318 @@
+package tune.the.code.v2;
+
+import datamodel.Bank;
+import datamodel.BankAccount;
+import datamodel.Contract;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Contracts, bank accounts and banks in one binary file, streamed instead of loaded, so the heap a batch takes does
+ * not grow with the file. Written by {@link ContractFileWriter}.
+ * <p>
+ * After a header of {@value #HEADER_BYTES} bytes come the banks as fixed-size records {@code [id][name]}, the
+ * accounts as {@code [id][bankId][number]}, both sorted by id, and then the contracts in blocks of
+ * {@code blockSize} bytes, each {@code [record count]} followed by {@code [id][accountId][name]} records. Strings
+ * are stored as a short length and UTF-8 bytes, -1 stands for null, and {@link #NO_ACCOUNT} for a contract without
+ * account.
+ * <p>
+ * The banks and accounts are mapped read-only and searched there, the objects for them are kept in
+ * {@link ProviderCache}s of bounded size. The contracts are read a whole block at a time by
+ * {@link #spliterator()}, which splits along the blocks, so that a parallel stream reads the file from several
+ * threads at once. Nothing of the file is held on the heap except the caches and one block per reading thread.
+ *
+ * @since 18.10.2026
+ */
+public class ContractFile implements Closeable {
+
+    /**
+     * System property with an existing contract file for the file engine to stream from.
+     */
+    public static final String PATH_PROPERTY = "contract.file";
+    public static final int NO_ACCOUNT = ContractStore.NOT_FOUND;
+    public static final int DEFAULT_ACCOUNT_CACHE_SIZE = 1 << 16;
+    public static final int DEFAULT_BANK_CACHE_SIZE = 1 << 12;
+
+    static final int MAGIC = 0x43545246;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 128;
+    static final int BANK_RECORD_BYTES = Integer.BYTES + Short.BYTES;
+    static final int ACCOUNT_RECORD_BYTES = 3 * Integer.BYTES;
+    static final int CONTRACT_RECORD_BYTES = 2 * Integer.BYTES + Short.BYTES;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int blockSize;
+    private final int bankCount;
+    private final int bankRecordSize;
+    private final int accountCount;
+    private final int contractCount;
+    private final int blockCount;
+    private final int maxContractId;
+    private final long datasetKey;
+    private final long contractsOffset;
+    private final ByteBuffer banks;
+    private final ByteBuffer accounts;
+    private final ProviderCache<BankAccount> accountCache;
+    private final ProviderCache<Bank> bankCache;
+
+    public ContractFile(Path path) throws IOException {
+        this(path, DEFAULT_ACCOUNT_CACHE_SIZE, DEFAULT_BANK_CACHE_SIZE);
+    }
+
+    /**
+     * @param accountCacheSize bank accounts kept as objects, the oldest are evicted first
+     * @param bankCacheSize    likewise for the banks
+     */
+    public ContractFile(Path path, int accountCacheSize, int bankCacheSize) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException(path + " is not a contract file of version " + VERSION);
+            }
+            this.blockSize = header.getInt();
+            this.bankCount = header.getInt();
+            this.bankRecordSize = header.getInt();
+            this.accountCount = header.getInt();
+            this.contractCount = header.getInt();
+            this.blockCount = header.getInt();
+            this.maxContractId = header.getInt();
+            this.datasetKey = header.getLong();
+            long banksOffset = header.getLong();
+            long accountsOffset = header.getLong();
+            this.contractsOffset = header.getLong();
+            this.banks = channel.map(FileChannel.MapMode.READ_ONLY, banksOffset, (long) bankCount * bankRecordSize);
+            this.accounts = channel.map(FileChannel.MapMode.READ_ONLY, accountsOffset,
+                                        (long) accountCount * ACCOUNT_RECORD_BYTES);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        // nothing to warm up from, the file is read on demand
+        this.accountCache = new ProviderCache<>("file accounts", Collections::emptyList, this::readBankAccount,
+                                                BankAccount::getId, accountCacheSize);
+        this.bankCache = new ProviderCache<>("file banks", Collections::emptyList, this::readBank, Bank::getId,
+                                             bankCacheSize);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getContractCount() {
+        return contractCount;
+    }
+
+    public int getAccountCount() {
+        return accountCount;
+    }
+
+    public int getBankCount() {
+        return bankCount;
+    }
+
+    /**
+     * @return -1 if there are no contracts
+     */
+    public int getMaxContractId() {
+        return maxContractId;
+    }
+
+    /**
+     * @return the {@link ResumeJournal#datasetKey(java.util.Collection)} of the contracts, computed when the file
+     * was written
+     */
+    public long getDatasetKey() {
+        return datasetKey;
+    }
+
+    /**
+     * @return null if the file has no account with that id
+     */
+    public BankAccount bankAccountById(int bankAccountId) {
+        return accountCache.get(bankAccountId);
+    }
+
+    /**
+     * @return null if the file has no bank with that id
+     */
+    public Bank bankById(int bankId) {
+        return bankCache.get(bankId);
+    }
+
+    /**
+     * Contracts in the order they were written, each element is a new object.
+     */
+    public Spliterator<Contract> spliterator() {
+        return new BlockSpliterator(0, blockCount);
+    }
+
+    public Stream<Contract> contracts(boolean parallel) {
+        return StreamSupport.stream(spliterator(), parallel);
+    }
+
+    public String getStatistics() {
+        return accountCache.getStatistics() + System.lineSeparator() + bankCache.getStatistics();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // the mappings stay valid until they are garbage collected
+        channel.close();
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return;
+            }
+            position += read;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Lookups in the mapped sections, called by the caches on a miss
+    // -------------------------------------------------------------------------
+
+    private BankAccount readBankAccount(int bankAccountId) {
+        int index = search(accounts, accountCount, ACCOUNT_RECORD_BYTES, bankAccountId);
+        if (index < 0) {
+            return null;
+        }
+        int offset = index * ACCOUNT_RECORD_BYTES;
+        return new BankAccount(bankAccountId, accounts.getInt(offset + Integer.BYTES),
+                               accounts.getInt(offset + 2 * Integer.BYTES));
+    }
+
+    private Bank readBank(int bankId) {
+        int index = search(banks, bankCount, bankRecordSize, bankId);
+        if (index < 0) {
+            return null;
+        }
+        ByteBuffer record = banks.duplicate();
+        record.position(index * bankRecordSize + Integer.BYTES);
+        return new Bank(bankId, getString(record));
+    }
+
+    /**
+     * Binary search over records that start with their id. Absolute reads only, so the mapped buffer can be shared
+     * by all threads.
+     *
+     * @return index of the record, -1 if there is none
+     */
+    private static int search(ByteBuffer section, int count, int recordSize, int id) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = section.getInt(mid * recordSize);
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads blocks {@code [nextBlock, endBlock)} one at a time into its own buffer, which is only allocated on the
+     * first read, so splitting is cheap. Splits hand over the upper half of the blocks not read yet.
+     */
+    private final class BlockSpliterator implements Spliterator<Contract> {
+
+        private int nextBlock;
+        private int endBlock;
+        private ByteBuffer block;
+        private int recordsLeft;
+
+        private BlockSpliterator(int nextBlock, int endBlock) {
+            this.nextBlock = nextBlock;
+            this.endBlock = endBlock;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Contract> action) {
+            while (recordsLeft == 0) {
+                if (nextBlock >= endBlock) {
+                    return false;
+                }
+                readBlock(nextBlock++);
+            }
+            recordsLeft--;
+            int id = block.getInt();
+            int bankAccountId = block.getInt();
+            String policyHolderName = getString(block);
+            action.accept(new Contract(id, bankAccountId == NO_ACCOUNT ? null : bankAccountId, policyHolderName));
+            return true;
+        }
+
+        private void readBlock(int index) {
+            if (block == null) {
+                block = ByteBuffer.allocateDirect(blockSize);
+            }
+            block.clear();
+            try {
+                readFully(block, contractsOffset + (long) index * blockSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read block " + index + " of " + path, e);
+            }
+            block.flip();
+            recordsLeft = block.getInt();
+        }
+
+        @Override
+        public Spliterator<Contract> trySplit() {
+            int blocksLeft = endBlock - nextBlock;
+            if (blocksLeft < 2) {
+                return null;
+            }
+            int middle = nextBlock + blocksLeft / 2;
+            BlockSpliterator upper = new BlockSpliterator(middle, endBlock);
+            endBlock = middle;
+            return upper;
+        }
+
+        @Override
+        public long estimateSize() {
+            if (blockCount == 0) {
+                return recordsLeft;
+            }
+            return recordsLeft + (long) (endBlock - nextBlock) * contractCount / blockCount;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package tune.the.code.v2;
+
+import datamodel.Bank;
+import datamodel.BankAccount;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Writes a {@link ContractFile}. Banks come first, then the accounts, both in ascending id order, then the
+ * contracts in any order. Only the banks are held until the first account arrives, the rest goes to disk through a
+ * buffer of one block, so files of any size can be written from a stream. The file only shows up under its name
+ * once it is closed complete. If adding fails, or the writer is {@link #abort() aborted}, closing deletes what was
+ * written so far instead.
+ *
+ * @since 18.10.2026
+ */
+public class ContractFileWriter implements Closeable {
+
+    public static final int DEFAULT_BLOCK_SIZE = 64 << 10;
+
+    private final Path file;
+    private final Path temp;
+    private final FileChannel channel;
+    private final int blockSize;
+    private final ByteBuffer buffer;
+
+    private final List<Bank> banks = new ArrayList<>();
+    private int bankRecordSize;
+    private long banksOffset;
+    private long accountsOffset;
+    private long contractsOffset = -1;
+    private long position = ContractFile.HEADER_BYTES;
+
+    private int lastBankId = Integer.MIN_VALUE;
+    private int lastAccountId = Integer.MIN_VALUE;
+    private int accountCount;
+    private int contractCount;
+    private int blockCount;
+    private int recordsInBlock;
+    private int maxContractId = -1;
+    // the dataset key of ResumeJournal is count * 31^(2 * count) + the hash of the contracts
+    private long contractHash;
+    private long keyPower = 1;
+    private boolean failed;
+
+    public ContractFileWriter(Path file) throws IOException {
+        this(file, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param blockSize unit of reading and of splitting, the longest contract has to fit into one
+     */
+    public ContractFileWriter(Path file, int blockSize) throws IOException {
+        if (blockSize < 64) {
+            throw new IllegalArgumentException("blockSize must be at least 64 bytes");
+        }
+        this.file = file;
+        this.temp = file.resolveSibling(file.getFileName() + ".tmp");
+        this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                        StandardOpenOption.WRITE);
+        this.blockSize = blockSize;
+        this.buffer = ByteBuffer.allocateDirect(blockSize);
+    }
+
+    /**
+     * Writes everything in {@code store}, e.g. to export a data set that was loaded from the providers.
+     */
+    public static void write(Path file, ContractStore store) throws IOException {
+        try (ContractFileWriter writer = new ContractFileWriter(file)) {
+            try {
+                for (int b : sortedIndexes(store.bankCount(), b -> store.bank(b).getId())) {
+                    writer.addBank(store.bank(b));
+                }
+                for (int a : sortedIndexes(store.accountCount(), store::accountId)) {
+                    writer.addBankAccount(store.accountId(a), store.accountBankId(a), store.accountNumber(a));
+                }
+                for (int c = 0; c < store.contractCount(); c++) {
+                    writer.addContract(store.contractId(c), store.accountIdOfContract(c),
+                                       store.policyHolderName(c));
+                }
+            } catch (IOException | RuntimeException e) {
+                // the adds abort by themselves, the store may fail as well
+                writer.abort();
+                throw e;
+            }
+        }
+    }
+
+    private static Integer[] sortedIndexes(int count, IntUnaryOperator idOf) {
+        Integer[] indexes = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            indexes[i] = i;
+        }
+        Arrays.sort(indexes, Comparator.comparingInt(idOf::applyAsInt));
+        return indexes;
+    }
+
+    public void addBank(Bank bank) {
+        checkNotFailed();
+        try {
+            if (banksOffset != 0 || contractsOffset >= 0) {
+                throw new IllegalStateException("Banks have to come before the accounts and contracts");
+            }
+            checkAscending(bank.getId(), lastBankId, "bank");
+            lastBankId = bank.getId();
+            banks.add(bank);
+        } catch (RuntimeException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    public void addBankAccount(int id, int bankId, int number) throws IOException {
+        checkNotFailed();
+        try {
+            if (contractsOffset >= 0) {
+                throw new IllegalStateException("Accounts have to come before the contracts");
+            }
+            if (banksOffset == 0) {
+                writeBanks();
+            }
+            checkAscending(id, lastAccountId, "account");
+            lastAccountId = id;
+            ensureRoom(ContractFile.ACCOUNT_RECORD_BYTES);
+            buffer.putInt(id).putInt(bankId).putInt(number);
+            accountCount++;
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    public void addBankAccount(BankAccount bankAccount) throws IOException {
+        addBankAccount(bankAccount.getId(), bankAccount.getBankId(), bankAccount.getNumber());
+    }
+
+    /**
+     * @param bankAccountId {@link ContractFile#NO_ACCOUNT} if the contract has none
+     */
+    public void addContract(int id, int bankAccountId, String policyHolderName) throws IOException {
+        checkNotFailed();
+        try {
+            if (contractsOffset < 0) {
+                if (banksOffset == 0) {
+                    writeBanks();
+                }
+                flush();
+                // blocks are aligned to the block size, so a reader can find each of them without an index
+                contractsOffset = (position + blockSize - 1) / blockSize * blockSize;
+                position = contractsOffset;
+            }
+            byte[] name = policyHolderName == null ? null : utf8(policyHolderName);
+            checkNameLength(name, "policy holder name of contract " + id);
+            int recordSize = ContractFile.CONTRACT_RECORD_BYTES + (name == null ? 0 : name.length);
+            if (Integer.BYTES + recordSize > blockSize) {
+                throw new IllegalArgumentException("Contract " + id + " does not fit into a block of " + blockSize);
+            }
+            if (recordsInBlock == 0 || buffer.remaining() < recordSize) {
+                startBlock();
+            }
+            buffer.putInt(id).putInt(bankAccountId);
+            buffer.putShort((short) (name == null ? -1 : name.length));
+            if (name != null) {
+                buffer.put(name);
+            }
+            recordsInBlock++;
+            contractCount++;
+            maxContractId = Math.max(maxContractId, id);
+            contractHash = contractHash * 31 + id;
+            contractHash = contractHash * 31 + bankAccountId;
+            keyPower *= 31 * 31;
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Gives up on the file, e.g. because the source of the contracts failed. {@link #close()} then deletes it.
+     */
+    public void abort() {
+        failed = true;
+    }
+
+    private void checkNotFailed() {
+        if (failed) {
+            throw new IllegalStateException("Writing " + file + " has failed or was aborted");
+        }
+    }
+
+    private static void checkAscending(int id, int lastId, String what) {
+        if (id <= lastId) {
+            throw new IllegalArgumentException("The " + what + " ids have to be ascending, " + id + " after " + lastId);
+        }
+    }
+
+    private void writeBanks() throws IOException {
+        banksOffset = position;
+        int longestName = 0;
+        for (Bank bank : banks) {
+            byte[] name = bank.getName() == null ? null : utf8(bank.getName());
+            checkNameLength(name, "name of bank " + bank.getId());
+            longestName = Math.max(longestName, name == null ? 0 : name.length);
+        }
+        bankRecordSize = ContractFile.BANK_RECORD_BYTES + longestName;
+        for (Bank bank : banks) {
+            ensureRoom(bankRecordSize);
+            byte[] name = bank.getName() == null ? null : utf8(bank.getName());
+            buffer.putInt(bank.getId());
+            buffer.putShort((short) (name == null ? -1 : name.length));
+            if (name != null) {
+                buffer.put(name);
+            }
+            for (int i = name == null ? 0 : name.length; i < longestName; i++) {
+                buffer.put((byte) 0);
+            }
+        }
+        accountsOffset = position + buffer.position();
+    }
+
+    /**
+     * The length is stored as a short, longer names would wrap around.
+     */
+    private static void checkNameLength(byte[] name, String what) {
+        if (name != null && name.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("The " + what + " is longer than " + Short.MAX_VALUE + " bytes");
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void ensureRoom(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes the current block out padded to its full size and starts the next one with its record count.
+     */
+    private void startBlock() throws IOException {
+        finishBlock();
+        buffer.putInt(0);
+        recordsInBlock = 0;
+        blockCount++;
+    }
+
+    private void finishBlock() throws IOException {
+        if (blockCount == 0) {
+            return;
+        }
+        buffer.putInt(0, recordsInBlock);
+        buffer.position(blockSize);
+        flush();
+    }
+
+    /**
+     * Completes the file and moves it into place, or deletes it if writing has failed or was aborted.
+     */
+    @Override
+    public void close() throws IOException {
+        if (failed) {
+            channel.close();
+            Files.deleteIfExists(temp);
+            return;
+        }
+        try {
+            if (banksOffset == 0) {
+                writeBanks();
+            }
+            if (contractsOffset < 0) {
+                flush();
+                contractsOffset = position;
+            } else {
+                finishBlock();
+            }
+            ByteBuffer header = ByteBuffer.allocate(ContractFile.HEADER_BYTES);
+            header.putInt(ContractFile.MAGIC).putInt(ContractFile.VERSION).putInt(blockSize);
+            header.putInt(banks.size()).putInt(bankRecordSize).putInt(accountCount);
+            header.putInt(contractCount).putInt(blockCount).putInt(maxContractId);
+            header.putLong(contractCount * keyPower + contractHash);
+            header.putLong(banksOffset).putLong(accountsOffset).putLong(contractsOffset);
+            header.clear();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            throw e;
+        } finally {
+            channel.close();
+            if (failed) {
+                Files.deleteIfExists(temp);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,55 @@
+package tune.the.code.v2;
+
+/**
+ * Publishes the contracts of a {@link ContractStore} that have a bank account, as the requests the rest of the
+ * pipeline passes on. A request is only created once the subscriber asked for it, so no more of them exist at a
+ * time than the stages downstream have room for. Every subscriber gets all contracts from the start.
+ *
+ * @since 18.10.2026
+ */
+public class ContractSource implements Flow.Publisher<PrintInputData> {
+
+    private final ContractStore store;
+
+    public ContractSource(ContractStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super PrintInputData> subscriber) {
+        DemandEmitter<PrintInputData> emitter = new DemandEmitter<>(subscriber, new Cursor(), () -> {
+        });
+        emitter.start();
+        emitter.complete();
+    }
+
+    private final class Cursor implements DemandEmitter.Source<PrintInputData> {
+
+        private int next = skipToAccount(0);
+
+        private int skipToAccount(int contractIndex) {
+            int c = contractIndex;
+            while (c < store.contractCount() && store.accountIndexOfContract(c) == ContractStore.NOT_FOUND) {
+                c++;
+            }
+            return c;
+        }
+
+        @Override
+        public PrintInputData poll() {
+            if (next >= store.contractCount()) {
+                return null;
+            }
+            int c = next;
+            next = skipToAccount(c + 1);
+            int accountIndex = store.accountIndexOfContract(c);
+            return new PrintInputData(store.contractId(c), store.policyHolderName(c), store.bankOfAccount(accountIndex),
+                                      store.bankAccount(accountIndex));
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return next >= store.contractCount();
+        }
+    }
+}
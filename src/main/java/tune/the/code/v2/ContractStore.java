@@ -0,0 +1,297 @@
+package tune.the.code.v2;
+
+import datamodel.Bank;
+import datamodel.BankAccount;
+import datamodel.Contract;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Struct-of-arrays copy of contracts, accounts and banks for the duration of a batch. Instead of one object per
+ * contract with a boxed account id and a {@code HashMap} entry per id, every attribute is an {@code int[]} column,
+ * ids are found through {@link IntIndexMap}s and the few distinct policy holder names are dictionary-encoded.
+ * <p>
+ * The contract -> account -> bank join is resolved once while building, so the batch only follows array indexes.
+ * Missing references are stored as {@link #NOT_FOUND}. The store is immutable and safe to share between threads.
+ *
+ * @since 18.10.2026
+ */
+public class ContractStore {
+
+    public static final int NOT_FOUND = IntIndexMap.NOT_FOUND;
+
+    // contracts
+    private final int[] contractIds;
+    private final int[] contractAccountIds;
+    private final int[] contractAccountIndexes;
+    private final int[] contractNameCodes;
+    private final String[] nameDictionary;
+
+    // accounts
+    private final int[] accountIds;
+    private final int[] accountBankIds;
+    private final int[] accountNumbers;
+    private final int[] accountBankIndexes;
+
+    // banks, only a handful of them, so the objects needed by the print system are kept as well
+    private final Bank[] banks;
+
+    private final IntIndexMap contractIndex;
+    private final IntIndexMap accountIndex;
+    private final IntIndexMap bankIndex;
+
+    ContractStore(int[] contractIds, int[] contractAccountIds, int[] contractAccountIndexes, int[] contractNameCodes,
+                  String[] nameDictionary, int[] accountIds, int[] accountBankIds, int[] accountNumbers,
+                  int[] accountBankIndexes, Bank[] banks, IntIndexMap contractIndex, IntIndexMap accountIndex,
+                  IntIndexMap bankIndex) {
+        this.contractIds = contractIds;
+        this.contractAccountIds = contractAccountIds;
+        this.contractAccountIndexes = contractAccountIndexes;
+        this.contractNameCodes = contractNameCodes;
+        this.nameDictionary = nameDictionary;
+        this.accountIds = accountIds;
+        this.accountBankIds = accountBankIds;
+        this.accountNumbers = accountNumbers;
+        this.accountBankIndexes = accountBankIndexes;
+        this.banks = banks;
+        this.contractIndex = contractIndex;
+        this.accountIndex = accountIndex;
+        this.bankIndex = bankIndex;
+    }
+
+    public static ContractStore build(Collection<Contract> contracts, Collection<BankAccount> accounts,
+                                      Collection<Bank> banks) {
+        Bank[] bankArray = banks.toArray(new Bank[0]);
+        IntIndexMap bankIndex = new IntIndexMap(bankArray.length);
+        for (int b = 0; b < bankArray.length; b++) {
+            bankIndex.put(bankArray[b].getId(), b);
+        }
+
+        int accountCount = accounts.size();
+        int[] accountIds = new int[accountCount];
+        int[] accountBankIds = new int[accountCount];
+        int[] accountNumbers = new int[accountCount];
+        int[] accountBankIndexes = new int[accountCount];
+        IntIndexMap accountIndex = new IntIndexMap(accountCount);
+        int a = 0;
+        for (BankAccount account : accounts) {
+            accountIds[a] = account.getId();
+            accountBankIds[a] = account.getBankId();
+            accountNumbers[a] = account.getNumber();
+            accountBankIndexes[a] = bankIndex.get(account.getBankId());
+            accountIndex.put(account.getId(), a);
+            a++;
+        }
+
+        int contractCount = contracts.size();
+        int[] contractIds = new int[contractCount];
+        int[] contractAccountIds = new int[contractCount];
+        int[] contractAccountIndexes = new int[contractCount];
+        int[] contractNameCodes = new int[contractCount];
+        IntIndexMap contractIndex = new IntIndexMap(contractCount);
+        Map<String, Integer> nameCodes = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        int c = 0;
+        for (Contract contract : contracts) {
+            contractIds[c] = contract.getId();
+            Integer bankAccountId = contract.getBankAccountId();
+            if (bankAccountId == null) {
+                contractAccountIds[c] = NOT_FOUND;
+                contractAccountIndexes[c] = NOT_FOUND;
+            } else {
+                contractAccountIds[c] = bankAccountId;
+                contractAccountIndexes[c] = accountIndex.get(bankAccountId);
+            }
+            contractNameCodes[c] = nameCodes.computeIfAbsent(contract.getPolicyHolderName(), name -> {
+                names.add(name);
+                return names.size() - 1;
+            });
+            contractIndex.put(contract.getId(), c);
+            c++;
+        }
+
+        return new ContractStore(contractIds, contractAccountIds, contractAccountIndexes, contractNameCodes,
+                                 names.toArray(new String[0]), accountIds, accountBankIds, accountNumbers,
+                                 accountBankIndexes, bankArray, contractIndex, accountIndex, bankIndex);
+    }
+
+    /**
+     * Uses the bulk loads of the caches, so the providers are only asked once even if the caches are shared.
+     */
+    public static ContractStore build(ProviderCaches providerCaches) {
+        return build(providerCaches.getContracts().warmUp(), providerCaches.getBankAccounts().warmUp(),
+                     providerCaches.getBanks().warmUp());
+    }
+
+    // -------------------------------------------------------------------------
+    // Contracts
+    // -------------------------------------------------------------------------
+
+    public int contractCount() {
+        return contractIds.length;
+    }
+
+    public int indexOfContract(int contractId) {
+        return contractIndex.get(contractId);
+    }
+
+    public int contractId(int contractIndex) {
+        return contractIds[contractIndex];
+    }
+
+    /**
+     * @return the account id as stored in the contract, {@link #NOT_FOUND} if the contract has none
+     */
+    public int accountIdOfContract(int contractIndex) {
+        return contractAccountIds[contractIndex];
+    }
+
+    /**
+     * @return {@link #NOT_FOUND} if the contract has no account or the account does not exist
+     */
+    public int accountIndexOfContract(int contractIndex) {
+        return contractAccountIndexes[contractIndex];
+    }
+
+    public String policyHolderName(int contractIndex) {
+        return nameDictionary[contractNameCodes[contractIndex]];
+    }
+
+    public int policyHolderNameCode(int contractIndex) {
+        return contractNameCodes[contractIndex];
+    }
+
+    public String policyHolderNameForCode(int nameCode) {
+        return nameDictionary[nameCode];
+    }
+
+    public int nameCount() {
+        return nameDictionary.length;
+    }
+
+    // -------------------------------------------------------------------------
+    // Accounts
+    // -------------------------------------------------------------------------
+
+    public int accountCount() {
+        return accountIds.length;
+    }
+
+    public int indexOfAccount(int accountId) {
+        return accountIndex.get(accountId);
+    }
+
+    public int accountId(int accountIndex) {
+        return accountIds[accountIndex];
+    }
+
+    public int accountBankId(int accountIndex) {
+        return accountBankIds[accountIndex];
+    }
+
+    public int accountNumber(int accountIndex) {
+        return accountNumbers[accountIndex];
+    }
+
+    /**
+     * @return {@link #NOT_FOUND} if the account's bank does not exist
+     */
+    public int bankIndexOfAccount(int accountIndex) {
+        return accountBankIndexes[accountIndex];
+    }
+
+    /**
+     * The downstream systems want an object, so one is created on demand.
+     */
+    public BankAccount bankAccount(int accountIndex) {
+        return new BankAccount(accountIds[accountIndex], accountBankIds[accountIndex], accountNumbers[accountIndex]);
+    }
+
+    // -------------------------------------------------------------------------
+    // Banks
+    // -------------------------------------------------------------------------
+
+    public int bankCount() {
+        return banks.length;
+    }
+
+    public int indexOfBank(int bankId) {
+        return bankIndex.get(bankId);
+    }
+
+    public Bank bank(int bankIndex) {
+        return banks[bankIndex];
+    }
+
+    /**
+     * @return null if the bank does not exist
+     */
+    public Bank bankById(int bankId) {
+        int b = bankIndex.get(bankId);
+        return b == NOT_FOUND ? null : banks[b];
+    }
+
+    /**
+     * @return null if the account's bank does not exist
+     */
+    public Bank bankOfAccount(int accountIndex) {
+        int b = accountBankIndexes[accountIndex];
+        return b == NOT_FOUND ? null : banks[b];
+    }
+
+    // -------------------------------------------------------------------------
+    // Raw columns, for ProviderSnapshot. Callers must not modify them.
+    // -------------------------------------------------------------------------
+
+    int[] contractIdColumn() {
+        return contractIds;
+    }
+
+    int[] contractAccountIdColumn() {
+        return contractAccountIds;
+    }
+
+    int[] contractAccountIndexColumn() {
+        return contractAccountIndexes;
+    }
+
+    int[] contractNameCodeColumn() {
+        return contractNameCodes;
+    }
+
+    String[] nameDictionary() {
+        return nameDictionary;
+    }
+
+    int[] accountIdColumn() {
+        return accountIds;
+    }
+
+    int[] accountBankIdColumn() {
+        return accountBankIds;
+    }
+
+    int[] accountNumberColumn() {
+        return accountNumbers;
+    }
+
+    int[] accountBankIndexColumn() {
+        return accountBankIndexes;
+    }
+
+    IntIndexMap contractIndexMap() {
+        return contractIndex;
+    }
+
+    IntIndexMap accountIndexMap() {
+        return accountIndex;
+    }
+
+    IntIndexMap bankIndexMap() {
+        return bankIndex;
+    }
+}
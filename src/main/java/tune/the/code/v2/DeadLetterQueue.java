@@ -0,0 +1,124 @@
+package tune.the.code.v2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the items that were given up on, so that they show up in the report at the end of the run instead of
+ * getting lost. Nothing is retried from here. A contract whose print was given up on is not marked as printed in the
+ * {@link ResumeJournal}, so resuming from the journal requests its print again.
+ * <p>
+ * Keeps at most {@code capacity} entries and counts the rest.
+ *
+ * @since 18.10.2026
+ */
+public class DeadLetterQueue {
+
+    public static final int DEFAULT_CAPACITY = 10_000;
+
+    private static final int REPORTED_ENTRIES = 20;
+
+    private final int capacity;
+    private final ConcurrentLinkedQueue<Entry> entries = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger kept = new AtomicInteger();
+    private final Map<String, LongAdder> countBySystem = new ConcurrentHashMap<>();
+
+    public DeadLetterQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public DeadLetterQueue(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param attempts calls made before giving up
+     */
+    public void add(String system, int contractId, int attempts, String reason) {
+        countBySystem.computeIfAbsent(system, s -> new LongAdder()).increment();
+        if (kept.incrementAndGet() <= capacity) {
+            entries.add(new Entry(system, contractId, attempts, reason));
+        } else {
+            kept.decrementAndGet();
+        }
+    }
+
+    public long getCount(String system) {
+        LongAdder count = countBySystem.get(system);
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * @return the entries kept so far, oldest first
+     */
+    public List<Entry> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    /**
+     * @return the number of dead letters of {@code system} and the first of them, empty if there are none
+     */
+    public String report(String system) {
+        long count = getCount(system);
+        if (count == 0) {
+            return "";
+        }
+        StringBuilder report = new StringBuilder(String.format("Dead letters %s: %d", system, count));
+        int listed = 0;
+        for (Entry entry : entries) {
+            if (!entry.getSystem().equals(system)) {
+                continue;
+            }
+            if (listed++ == REPORTED_ENTRIES) {
+                report.append(String.format("%n  ..."));
+                break;
+            }
+            report.append(String.format("%n  %s", entry));
+        }
+        return report.toString();
+    }
+
+    public static final class Entry {
+
+        private final String system;
+        private final int contractId;
+        private final int attempts;
+        private final String reason;
+
+        private Entry(String system, int contractId, int attempts, String reason) {
+            this.system = system;
+            this.contractId = contractId;
+            this.attempts = attempts;
+            this.reason = reason;
+        }
+
+        public String getSystem() {
+            return system;
+        }
+
+        public int getContractId() {
+            return contractId;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "contract " + contractId + " after " + attempts + " attempt(s): " + reason;
+        }
+    }
+}
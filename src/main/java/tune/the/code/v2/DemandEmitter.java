@@ -0,0 +1,127 @@
+package tune.the.code.v2;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The publishing end of a {@link Flow} stage: hands items from a source to one subscriber, never more than the
+ * subscriber requested. Any thread may call {@link #drain()}, a work-in-progress counter makes sure only one of them
+ * signals the subscriber at a time and that no item that arrives meanwhile is missed.
+ *
+ * @since 18.10.2026
+ */
+final class DemandEmitter<T> implements Flow.Subscription {
+
+    /**
+     * Where the items come from. Only polled by the thread that drains.
+     */
+    interface Source<T> {
+
+        /**
+         * @return the next item or null if there is none right now
+         */
+        T poll();
+
+        boolean isEmpty();
+    }
+
+    private final Flow.Subscriber<? super T> subscriber;
+    private final Source<T> source;
+    private final Runnable onCancel;
+
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger workInProgress = new AtomicInteger();
+    private volatile boolean done;
+    private volatile Throwable failure;
+    private volatile boolean cancelled;
+    // only touched while draining
+    private boolean terminated;
+
+    DemandEmitter(Flow.Subscriber<? super T> subscriber, Source<T> source, Runnable onCancel) {
+        this.subscriber = subscriber;
+        this.source = source;
+        this.onCancel = onCancel;
+    }
+
+    void start() {
+        subscriber.onSubscribe(this);
+    }
+
+    /**
+     * No more items will be added to the source. The subscriber completes once it has taken the remaining ones.
+     */
+    void complete() {
+        done = true;
+        drain();
+    }
+
+    /**
+     * Like {@link #complete()}, but the subscriber gets {@code failure} once it has taken the remaining items.
+     */
+    void fail(Throwable failure) {
+        this.failure = failure;
+        complete();
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            cancel();
+            subscriber.onError(new IllegalArgumentException("Requested " + n + " items, must be positive"));
+            return;
+        }
+        long current;
+        long next;
+        do {
+            current = requested.get();
+            next = current + n < 0 ? Long.MAX_VALUE : current + n;
+        } while (!requested.compareAndSet(current, next));
+        drain();
+    }
+
+    @Override
+    public void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            onCancel.run();
+        }
+    }
+
+    void drain() {
+        if (workInProgress.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            long demand = requested.get();
+            long emitted = 0;
+            while (emitted != demand && !cancelled && !terminated) {
+                T item = source.poll();
+                if (item == null) {
+                    break;
+                }
+                subscriber.onNext(item);
+                emitted++;
+            }
+            // done is read first, everything added before it was set is in the source by then
+            boolean sourceDone = done;
+            if (sourceDone && !cancelled && !terminated && source.isEmpty()) {
+                terminated = true;
+                Throwable sourceFailure = failure;
+                if (sourceFailure == null) {
+                    subscriber.onComplete();
+                } else {
+                    subscriber.onError(sourceFailure);
+                }
+            }
+            if (emitted != 0 && demand != Long.MAX_VALUE) {
+                requested.addAndGet(-emitted);
+            }
+            missed = workInProgress.addAndGet(-missed);
+        } while (missed != 0);
+    }
+}
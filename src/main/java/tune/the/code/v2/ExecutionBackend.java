@@ -0,0 +1,75 @@
+package tune.the.code.v2;
+
+import java.lang.reflect.Method;
+
+/**
+ * Where long-running workers get their thread from. The project targets Java 8, so virtual threads are looked up
+ * reflectively and {@link #VIRTUAL} falls back to platform threads on JDKs that do not have them.
+ *
+ * @since 18.10.2026
+ */
+public enum ExecutionBackend {
+
+    PLATFORM {
+        @Override
+        public Thread start(String name, Runnable task) {
+            Thread thread = new Thread(task, name);
+            thread.start();
+            return thread;
+        }
+    },
+
+    VIRTUAL {
+        @Override
+        public Thread start(String name, Runnable task) {
+            if (!VirtualThreads.SUPPORTED) {
+                return PLATFORM.start(name, task);
+            }
+            try {
+                Object builder = VirtualThreads.NAME.invoke(VirtualThreads.OF_VIRTUAL.invoke(null), name);
+                return (Thread) VirtualThreads.START.invoke(builder, task);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not start virtual thread " + name, e);
+            }
+        }
+    };
+
+    public abstract Thread start(String name, Runnable task);
+
+    /**
+     * @return {@link #VIRTUAL} if the running JDK supports virtual threads, {@link #PLATFORM} otherwise
+     */
+    public static ExecutionBackend best() {
+        return VirtualThreads.SUPPORTED ? VIRTUAL : PLATFORM;
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        return VirtualThreads.SUPPORTED;
+    }
+
+    private static final class VirtualThreads {
+
+        private static final Method OF_VIRTUAL;
+        private static final Method NAME;
+        private static final Method START;
+        private static final boolean SUPPORTED;
+
+        static {
+            Method ofVirtual = null;
+            Method name = null;
+            Method start = null;
+            try {
+                ofVirtual = Thread.class.getMethod("ofVirtual");
+                Class<?> builder = Class.forName("java.lang.Thread$Builder");
+                name = builder.getMethod("name", String.class);
+                start = builder.getMethod("start", Runnable.class);
+            } catch (ReflectiveOperationException e) {
+                // JDK before 21
+            }
+            OF_VIRTUAL = ofVirtual;
+            NAME = name;
+            START = start;
+            SUPPORTED = start != null;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package tune.the.code.v2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Shares the permits of one downstream system between several batches running side by side, each registered as a
+ * {@link Tenant} with a weight. While several tenants wait, every freed permit goes to the one with the smallest
+ * virtual start time (start-time fair queuing): each permit a tenant gets moves its virtual time on by
+ * {@code 1 / weight}, so two busy tenants of weight 1 and 2 get a third and two thirds of the calls, however much
+ * work either of them has queued. A tenant that was idle starts at the current virtual time rather than at its own
+ * old one, so it can not save up credit and then crowd out the others. A tenant that is alone gets every permit.
+ * <p>
+ * Hand out no more permits than the system admits callers, e.g. {@link config.Config#PRINT_CAPABILITIES}, so that
+ * nobody queues on the system's own semaphore, which knows nothing about fairness.
+ *
+ * @since 18.10.2026
+ */
+public class FairShareScheduler {
+
+    private final String name;
+    private final int permits;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // all guarded by lock
+    private final List<Tenant> tenants = new ArrayList<>();
+    private int available;
+    private double virtualTime;
+
+    public FairShareScheduler(String name, int permits) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("permits must be positive");
+        }
+        this.name = name;
+        this.permits = permits;
+        this.available = permits;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPermits() {
+        return permits;
+    }
+
+    /**
+     * @param weight share of the permits relative to the other tenants
+     */
+    public Tenant register(String tenantName, int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("weight must be positive");
+        }
+        Tenant tenant = new Tenant(tenantName, weight);
+        lock.lock();
+        try {
+            tenants.add(tenant);
+        } finally {
+            lock.unlock();
+        }
+        return tenant;
+    }
+
+    /**
+     * One line per registered tenant.
+     */
+    public String getStatistics() {
+        lock.lock();
+        try {
+            StringBuilder statistics = new StringBuilder();
+            for (Tenant tenant : tenants) {
+                if (statistics.length() > 0) {
+                    statistics.append(System.lineSeparator());
+                }
+                statistics.append(tenant.getStatistics());
+            }
+            return statistics.toString();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Charges one permit to {@code tenant}.
+     */
+    private void charge(Tenant tenant) {
+        double start = Math.max(virtualTime, tenant.virtualFinish);
+        tenant.virtualFinish = start + 1.0 / tenant.weight;
+        virtualTime = start;
+        tenant.acquired++;
+    }
+
+    /**
+     * Hands a freed permit straight to the waiting tenant that is furthest behind, or puts it back.
+     */
+    private void dispatch() {
+        Tenant next = null;
+        double nextStart = Double.MAX_VALUE;
+        for (Tenant tenant : tenants) {
+            if (tenant.waiting > tenant.grants) {
+                double start = Math.max(virtualTime, tenant.virtualFinish);
+                if (start < nextStart) {
+                    next = tenant;
+                    nextStart = start;
+                }
+            }
+        }
+        if (next == null) {
+            available++;
+            return;
+        }
+        next.grants++;
+        charge(next);
+        next.granted.signal();
+    }
+
+    /**
+     * One batch's view of the shared permits.
+     */
+    public final class Tenant implements AutoCloseable {
+
+        private final String tenantName;
+        private final int weight;
+        private final Condition granted = lock.newCondition();
+
+        // all guarded by lock
+        private int waiting;
+        // permits handed to this tenant that no waiting thread has picked up yet
+        private int grants;
+        private double virtualFinish;
+        private long acquired;
+        private long waitNanos;
+
+        private Tenant(String tenantName, int weight) {
+            this.tenantName = tenantName;
+            this.weight = weight;
+        }
+
+        public String getName() {
+            return tenantName;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        /**
+         * Blocks until this tenant's turn has come and a permit is free.
+         */
+        public void acquire() throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                if (available > 0) {
+                    // nobody is waiting, freed permits are handed over to waiters directly
+                    available--;
+                    charge(this);
+                    return;
+                }
+                long waitStart = System.nanoTime();
+                waiting++;
+                try {
+                    while (grants == 0) {
+                        granted.await();
+                    }
+                    grants--;
+                } catch (InterruptedException e) {
+                    if (grants >= waiting) {
+                        // a permit was handed over for this thread, pass it on
+                        grants--;
+                        dispatch();
+                    }
+                    throw e;
+                } finally {
+                    waiting--;
+                    waitNanos += System.nanoTime() - waitStart;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void release() {
+            lock.lock();
+            try {
+                dispatch();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return threads of this tenant waiting for a permit
+         */
+        public int getWaiting() {
+            lock.lock();
+            try {
+                return waiting;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public long getAcquired() {
+            lock.lock();
+            try {
+                return acquired;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void registerGauges(BatchMetrics metrics) {
+            metrics.registerGauge(name + ".fairShareWaiting", this::getWaiting);
+        }
+
+        public String getStatistics() {
+            lock.lock();
+            try {
+                double averageWaitMillis = acquired == 0
+                                           ? 0
+                                           : TimeUnit.NANOSECONDS.toMicros(waitNanos) / 1000.0 / acquired;
+                return String.format("Fair share %s, %s (weight %d): %d permits, average wait %.2f ms",
+                                     name, tenantName, weight, acquired, averageWaitMillis);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Leaves the scheduler. Must only be called once the tenant holds and waits for no permit anymore.
+         */
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                tenants.remove(this);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
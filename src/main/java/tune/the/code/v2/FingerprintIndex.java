@@ -0,0 +1,234 @@
+package tune.the.code.v2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Remembers a fingerprint of every contract a batch went through, so that the next batch can leave out the
+ * contracts that did not change since. The fingerprint covers the contract's id, bank account id and policy holder
+ * name as well as the account's bank id and number and the bank's name, i.e. everything an inkasso or a
+ * confirmation depends on.
+ * <p>
+ * A batch {@linkplain #begin(int) begins} a new generation of the index. Contracts it left out as unchanged are
+ * carried over. The others are {@linkplain #prepare(int, int, long) prepared} when their inkasso is submitted and
+ * only {@linkplain #recordPrinted(int) recorded} once their confirmation was printed, so a contract whose inkasso or
+ * print failed is tried again next time. {@link #save()} replaces the file with the new generation, contracts that
+ * are gone from the data set drop out. Hand the same index to {@link InkassoBatch} and {@link Print}, the latter
+ * saves it once printing has stopped.
+ * <p>
+ * The index lives on the heap: 12 bytes per contract of the previous generation plus a slot hash map for it, and
+ * 13 bytes per contract of the batch for the next generation. A delta run therefore takes heap in proportion to the
+ * data set, also when the contracts are streamed from a {@link ContractFile}.
+ * <p>
+ * On disk the index is a header of magic, version, entry count and a CRC32 of the payload, followed by an int id
+ * and a long fingerprint per contract, 12 bytes each. A missing or damaged file makes the next batch a full run.
+ *
+ * @since 18.10.2026
+ */
+public class FingerprintIndex {
+
+    /**
+     * System property with the index file of the delta engines.
+     */
+    public static final String PATH_PROPERTY = "fingerprint.index";
+    /**
+     * System property that makes the delta engines process every contract, see
+     * {@link #FingerprintIndex(Path, boolean)}.
+     */
+    public static final String FULL_RERUN_PROPERTY = "fingerprint.fullRerun";
+
+    private static final int MAGIC = 0x46504958; // "FPIX"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final int ENTRY_BYTES = Integer.BYTES + Long.BYTES;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Path file;
+    private final boolean fullRerun;
+
+    // the previous generation, read-only during a batch
+    private IntIndexMap previousSlots = new IntIndexMap(0);
+    private long[] previousFingerprints = new long[0];
+
+    // the next generation, slot i only written by whoever handles the i-th contract of the batch
+    private int[] nextIds = new int[0];
+    private long[] nextFingerprints = new long[0];
+    private boolean[] recorded = new boolean[0];
+
+    public FingerprintIndex(Path file) {
+        this(file, false);
+    }
+
+    /**
+     * @param fullRerun ignore the fingerprints on file and process every contract, the index is still written
+     *                  anew afterwards
+     */
+    public FingerprintIndex(Path file, boolean fullRerun) {
+        this.file = file;
+        this.fullRerun = fullRerun;
+    }
+
+    /**
+     * Reads the previous generation and makes room for the next one, 13 bytes per contract.
+     *
+     * @param contractCount the number of contracts the batch goes through
+     */
+    public synchronized void begin(int contractCount) {
+        if (!fullRerun) {
+            read();
+        }
+        nextIds = new int[contractCount];
+        nextFingerprints = new long[contractCount];
+        recorded = new boolean[contractCount];
+    }
+
+    public boolean isUnchanged(int contractId, long fingerprint) {
+        int slot = previousSlots.get(contractId);
+        return slot != IntIndexMap.NOT_FOUND && previousFingerprints[slot] == fingerprint;
+    }
+
+    /**
+     * Records a contract that needs no print in this batch, e.g. because it is unchanged.
+     *
+     * @param position where the contract is in the batch, between 0 and the count handed to {@link #begin(int)}
+     */
+    public void record(int position, int contractId, long fingerprint) {
+        prepare(position, contractId, fingerprint);
+        recordPrinted(position);
+    }
+
+    /**
+     * Remembers the fingerprint of a contract that is about to be processed, it only goes into the next generation
+     * once {@link #recordPrinted(int)} is called for the position. Must happen before the print request is queued,
+     * which makes it visible to the print worker.
+     */
+    public void prepare(int position, int contractId, long fingerprint) {
+        nextIds[position] = contractId;
+        nextFingerprints[position] = fingerprint;
+    }
+
+    /**
+     * @param position as handed to {@link #prepare(int, int, long)}
+     */
+    public void recordPrinted(int position) {
+        recorded[position] = true;
+    }
+
+    /**
+     * Writes the next generation to a temporary file next to the index and moves it into place. Must only be
+     * called once the batch is done, the completion of its threads makes their records visible.
+     */
+    public synchronized void save() throws IOException {
+        int count = 0;
+        for (boolean r : recorded) {
+            if (r) {
+                count++;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + count * ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(HEADER_BYTES);
+        for (int i = 0; i < recorded.length; i++) {
+            if (recorded[i]) {
+                buffer.putInt(nextIds[i]);
+                buffer.putLong(nextFingerprints[i]);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_BYTES, count * ENTRY_BYTES);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, count);
+        buffer.putLong(16, crc.getValue());
+        buffer.rewind();
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void read() {
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            System.err.println("Fingerprint index " + file + " not readable, processing all contracts: " + e);
+            return;
+        }
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            System.err.println("Fingerprint index " + file + " has an unknown format, processing all contracts");
+            return;
+        }
+        int count = buffer.getInt(8);
+        if (count < 0 || buffer.remaining() != HEADER_BYTES + (long) count * ENTRY_BYTES) {
+            System.err.println("Fingerprint index " + file + " is truncated, processing all contracts");
+            return;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_BYTES, count * ENTRY_BYTES);
+        if (crc.getValue() != buffer.getLong(16)) {
+            System.err.println("Fingerprint index " + file + " is damaged, processing all contracts");
+            return;
+        }
+        IntIndexMap slots = new IntIndexMap(count);
+        long[] fingerprints = new long[count];
+        buffer.position(HEADER_BYTES);
+        for (int i = 0; i < count; i++) {
+            slots.put(buffer.getInt(), i);
+            fingerprints[i] = buffer.getLong();
+        }
+        previousSlots = slots;
+        previousFingerprints = fingerprints;
+    }
+
+    /**
+     * FNV-1a over the fields, strings length-prefixed so that no two field lists run into each other.
+     *
+     * @param bankName null if the bank is not known
+     */
+    public static long fingerprint(int contractId, int bankAccountId, String policyHolderName, int bankId,
+                                   int accountNumber, String bankName) {
+        long hash = FNV_OFFSET_BASIS;
+        hash = hash(hash, contractId);
+        hash = hash(hash, bankAccountId);
+        hash = hash(hash, policyHolderName);
+        hash = hash(hash, bankId);
+        hash = hash(hash, accountNumber);
+        return hash(hash, bankName);
+    }
+
+    private static long hash(long hash, int value) {
+        return (hash ^ value) * FNV_PRIME;
+    }
+
+    private static long hash(long hash, String value) {
+        if (value == null) {
+            return hash(hash, -1);
+        }
+        hash = hash(hash, value.length());
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,45 @@
+package tune.the.code.v2;
+
+/**
+ * The interfaces of {@code java.util.concurrent.Flow}, which only exists from Java 9 on while the project targets
+ * Java 8. Same names, same methods and the same Reactive Streams rules, so moving to the JDK's version is a change
+ * of imports: signals to a subscriber are serialized, a publisher never sends more {@code onNext} than were
+ * requested, and {@code onComplete} or {@code onError} end the subscription.
+ *
+ * @since 18.10.2026
+ */
+public final class Flow {
+
+    private Flow() {
+    }
+
+    @FunctionalInterface
+    public interface Publisher<T> {
+
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    public interface Subscriber<T> {
+
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    public interface Subscription {
+
+        /**
+         * Adds {@code n} to the number of items the subscriber is ready to take, may be called from any thread.
+         */
+        void request(long n);
+
+        void cancel();
+    }
+
+    public interface Processor<T, R> extends Subscriber<T>, Publisher<R> {
+    }
+}
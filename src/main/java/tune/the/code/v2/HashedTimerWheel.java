@@ -0,0 +1,178 @@
+package tune.the.code.v2;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs tasks after a delay on a single timer thread, at the resolution of one tick. Timeouts are hashed into a ring
+ * of buckets by their deadline, so scheduling and expiring one costs the same no matter how many are pending, unlike
+ * the heap behind a {@link java.util.concurrent.ScheduledExecutorService}. A deadline more than one turn of the wheel
+ * away waits out the remaining turns in its bucket.
+ * <p>
+ * Tasks run on the timer thread and must neither block nor take long, they delay every other timeout. Hand anything
+ * else over to a queue or an executor.
+ *
+ * @since 18.10.2026
+ */
+public class HashedTimerWheel {
+
+    private static final long DEFAULT_TICK_MILLIS = 5;
+    private static final int DEFAULT_TICKS_PER_WHEEL = 512;
+    // new timeouts moved into buckets per tick, so that a flood of them does not stall the wheel
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private static final HashedTimerWheel DEFAULT = new HashedTimerWheel("retry-timer", DEFAULT_TICK_MILLIS,
+                                                                         TimeUnit.MILLISECONDS,
+                                                                         DEFAULT_TICKS_PER_WHEEL);
+
+    private final String name;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+    // set before any timeout is scheduled, their deadlines are relative to it
+    private final long startNanos = System.nanoTime();
+    private volatile boolean stopped;
+
+    // only touched by the timer thread
+    private long tick;
+
+    /**
+     * @param ticksPerWheel rounded up to a power of two
+     */
+    public HashedTimerWheel(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (tickDuration <= 0 || ticksPerWheel < 1) {
+            throw new IllegalArgumentException("tickDuration and ticksPerWheel must be positive");
+        }
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        this.name = name;
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.wheel = new Bucket[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+    }
+
+    /**
+     * Shared by all retry schedulers that are not given a wheel of their own. Its thread is a daemon and only
+     * started by the first timeout.
+     */
+    public static HashedTimerWheel getDefault() {
+        return DEFAULT;
+    }
+
+    public long getTick(TimeUnit unit) {
+        return unit.convert(tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Runs {@code task} on the timer thread once {@code delay} has passed, at the earliest with the next tick.
+     *
+     * @throws IllegalStateException if the wheel has been stopped
+     */
+    public void schedule(Runnable task, long delay, TimeUnit unit) {
+        if (stopped) {
+            throw new IllegalStateException("Timer wheel " + name + " has been stopped");
+        }
+        start();
+        newTimeouts.add(new Timeout(task, System.nanoTime() - startNanos + unit.toNanos(Math.max(0, delay))));
+    }
+
+    /**
+     * Stops the timer thread. Pending timeouts never run.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    private void start() {
+        if (started.compareAndSet(false, true)) {
+            Thread timer = new Thread(this::run, name);
+            timer.setDaemon(true);
+            timer.start();
+        }
+    }
+
+    private void run() {
+        // the thread is only started by the first timeout, the ticks before have nothing to expire
+        tick = (System.nanoTime() - startNanos) / tickNanos;
+        while (!stopped) {
+            long deadline = waitForNextTick();
+            transferNewTimeouts();
+            wheel[(int) (tick & mask)].expire(deadline);
+            tick++;
+        }
+    }
+
+    /**
+     * @return the time of the tick relative to the start of the wheel
+     */
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        long sleepNanos;
+        while ((sleepNanos = deadline - (System.nanoTime() - startNanos)) > 0) {
+            LockSupport.parkNanos(this, sleepNanos);
+        }
+        return deadline;
+    }
+
+    private void transferNewTimeouts() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = newTimeouts.poll();
+            if (timeout == null) {
+                return;
+            }
+            long expiryTick = Math.max(tick, timeout.deadlineNanos / tickNanos);
+            timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+            wheel[(int) (expiryTick & mask)].add(timeout);
+        }
+    }
+
+    private static final class Timeout {
+
+        private final Runnable task;
+        private final long deadlineNanos;
+        private long remainingRounds;
+
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    private static final class Bucket {
+
+        private final ArrayDeque<Timeout> timeouts = new ArrayDeque<>();
+
+        private void add(Timeout timeout) {
+            timeouts.add(timeout);
+        }
+
+        private void expire(long deadlineNanos) {
+            Iterator<Timeout> it = timeouts.iterator();
+            while (it.hasNext()) {
+                Timeout timeout = it.next();
+                if (timeout.remainingRounds > 0) {
+                    timeout.remainingRounds--;
+                } else if (timeout.deadlineNanos <= deadlineNanos) {
+                    it.remove();
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException e) {
+                        System.err.println("Timer task failed: " + e);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -3,17 +3,15 @@ package tune.the.code.v2;
 import datamodel.Bank;
 import datamodel.BankAccount;
 import datamodel.Contract;
-import dataprovider.BankAccountProvider;
-import dataprovider.BankProvider;
-import dataprovider.ContractProvider;
-import system.InkassoSystem;
-
-import java.lang.reflect.Field;
-import java.util.Collection;
-import java.util.Map;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
 
 /**
  * @author Sevket Goekay <goekay@dbis.rwth-aachen.de>
@@ -22,134 +20,701 @@ import java.util.stream.Collectors;
  */
 public class InkassoBatch {
 
-    private final AtomicInteger inkassoCount = new AtomicInteger(0);
-    private final AtomicInteger printRequestsCount = new AtomicInteger(0);
+    private static final int PROGRESS_INTERVAL = 1000;
+    private static final int CONTRACT_CHUNK_SIZE = 64;
+
+    // striped, every inkasso thread increments these
+    private final LongAdder inkassoCount = new LongAdder();
+    private final LongAdder printRequestsCount = new LongAdder();
+    private final LongAdder skippedCount = new LongAdder();
+    private final LongAdder resumedPrintCount = new LongAdder();
+    private final LongAdder unchangedCount = new LongAdder();
+    private final AtomicLong nextProgressMark = new AtomicLong(PROGRESS_INTERVAL);
     private final MessageQueue<PrintInputData> printSystemMessageQueue;
     private final boolean turnToTheDarkSide;
+    private final InkassoService inkassoService;
+    private final ProviderCaches providerCaches;
+    private final BatchMetrics metrics;
+    private final ResumeJournal journal;
+    private final AdaptiveConcurrencyLimit inkassoLimit;
+    // 0 for the default of the mode
+    private final int concurrency;
+    private final FingerprintIndex fingerprints;
+    private final RetryScheduler inkassoRetries;
+    private final AtomicLong firstInkassoNanos = new AtomicLong();
+    private volatile long batchStartNanos;
 
     public InkassoBatch() {
         this(true);
     }
 
     public InkassoBatch(boolean turnToTheDarkSide) {
-        this.turnToTheDarkSide = turnToTheDarkSide;
-        this.printSystemMessageQueue = MessageQueue.getInstance(PrintInputData.class);
+        this(turnToTheDarkSide, Print.getPrintQueue());
+    }
+
+    public InkassoBatch(boolean turnToTheDarkSide, MessageQueue<PrintInputData> printSystemMessageQueue) {
+        this(builder(turnToTheDarkSide).printQueue(printSystemMessageQueue));
+    }
+
+    private InkassoBatch(Builder builder) {
+        this.turnToTheDarkSide = builder.turnToTheDarkSide;
+        this.printSystemMessageQueue = builder.printQueue != null ? builder.printQueue : Print.getPrintQueue();
+        this.inkassoService = builder.inkassoService != null
+                              ? builder.inkassoService
+                              : turnToTheDarkSide ? InkassoService.DARK_SIDE : InkassoService.SYSTEM;
+        this.providerCaches = builder.providerCaches != null ? builder.providerCaches : new ProviderCaches();
+        this.metrics = builder.metrics != null ? builder.metrics : BatchMetrics.getDefault();
+        this.journal = builder.journal;
+        this.inkassoLimit = builder.inkassoLimit;
+        this.concurrency = builder.concurrency;
+        this.fingerprints = builder.fingerprints;
+        this.inkassoRetries = builder.inkassoRetries;
+        if (inkassoLimit != null) {
+            inkassoLimit.registerGauges(metrics);
+        }
+        if (inkassoRetries != null) {
+            inkassoRetries.registerGauges(metrics);
+        }
+    }
+
+    /**
+     * For everything beyond the mode and the queue. What is not set falls back to the same defaults as the
+     * constructors: the process-wide print queue, the system or the dark side, the providers and the default
+     * metrics.
+     */
+    public static Builder builder(boolean turnToTheDarkSide) {
+        return new Builder(turnToTheDarkSide);
+    }
+
+    public static final class Builder {
+
+        private final boolean turnToTheDarkSide;
+        private MessageQueue<PrintInputData> printQueue;
+        private InkassoService inkassoService;
+        private ProviderCaches providerCaches;
+        private BatchMetrics metrics;
+        private ResumeJournal journal;
+        private AdaptiveConcurrencyLimit inkassoLimit;
+        private int concurrency;
+        private FingerprintIndex fingerprints;
+        private RetryScheduler inkassoRetries;
+
+        private Builder(boolean turnToTheDarkSide) {
+            this.turnToTheDarkSide = turnToTheDarkSide;
+        }
+
+        public Builder printQueue(MessageQueue<PrintInputData> printQueue) {
+            this.printQueue = printQueue;
+            return this;
+        }
+
+        public Builder inkassoService(InkassoService inkassoService) {
+            this.inkassoService = inkassoService;
+            return this;
+        }
+
+        public Builder providerCaches(ProviderCaches providerCaches) {
+            this.providerCaches = providerCaches;
+            return this;
+        }
+
+        public Builder metrics(BatchMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @param journal skips contracts it has seen through and marks every completed inkasso. Hand the same
+         *                journal to {@link Print}, which marks the printed confirmations and closes it.
+         */
+        public Builder journal(ResumeJournal journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        /**
+         * @param concurrency number of inkasso calls in flight, by default one per processor in dark mode and
+         *                    {@link config.Config#INKASSO_CAPABILITIES} otherwise, the callers that
+         *                    {@link system.InkassoSystem} admits. Ignored with an {@link #inkassoLimit}, which brings
+         *                    its own maximum.
+         */
+        public Builder concurrency(int concurrency) {
+            if (concurrency < 1) {
+                throw new IllegalArgumentException("concurrency must be positive");
+            }
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * @param inkassoLimit learns how many inkasso calls the system takes at once. Without it the parallelism is
+         *                     fixed to the known capacity of {@link system.InkassoSystem}.
+         */
+        public Builder inkassoLimit(AdaptiveConcurrencyLimit inkassoLimit) {
+            this.inkassoLimit = inkassoLimit;
+            return this;
+        }
+
+        /**
+         * @param fingerprints makes this a delta run that leaves out the contracts that did not change since the
+         *                     run that wrote the index. Hand the same index to {@link Print}, which records the
+         *                     printed confirmations and saves it.
+         */
+        public Builder fingerprints(FingerprintIndex fingerprints) {
+            this.fingerprints = fingerprints;
+            return this;
+        }
+
+        /**
+         * @param inkassoRetries tries failed inkasso calls again later, off the inkasso threads. Without it a failed
+         *                       inkasso is dropped. The batch only ends once the last retry is over.
+         */
+        public Builder inkassoRetries(RetryScheduler inkassoRetries) {
+            this.inkassoRetries = inkassoRetries;
+            return this;
+        }
+
+        public InkassoBatch build() {
+            return new InkassoBatch(this);
+        }
     }
 
     public int getInkassoCount() {
-        return inkassoCount.get();
+        return inkassoCount.intValue();
     }
 
     public int getPrintRequestsCount() {
-        return printRequestsCount.get();
+        return printRequestsCount.intValue();
+    }
+
+    /**
+     * @return contracts the journal already had as printed, i.e. not touched by this run
+     */
+    public int getSkippedCount() {
+        return skippedCount.intValue();
+    }
+
+    /**
+     * @return print requests for contracts the journal had as collected but not yet printed. Part of
+     * {@link #getPrintRequestsCount()}, but not of {@link #getInkassoCount()}.
+     */
+    public int getResumedPrintCount() {
+        return resumedPrintCount.intValue();
+    }
+
+    /**
+     * @return contracts a delta run left out because their fingerprint did not change
+     */
+    public int getUnchangedCount() {
+        return unchangedCount.intValue();
+    }
+
+    /**
+     * @return time from the start of the batch until the first call to the inkasso system, -1 if there was none
+     */
+    public long getTimeToFirstInkasso(TimeUnit unit) {
+        long first = firstInkassoNanos.get();
+        return first == 0 ? -1 : unit.convert(first - batchStartNanos, TimeUnit.NANOSECONDS);
     }
 
     public void runInkassoBatch() {
+        batchStartNanos = System.nanoTime();
         // 1) because looking for an id in a list is O(n)
         // 2) because their accessor methods force the thread to sleep
-        Map<Integer, Bank> bankMap = getBankMap();
-        Map<Integer, BankAccount> bankAccountMap = getBankAccountMap();
+        // 3) loaded concurrently, inkasso can start before the banks are there
+        ProviderPrefetch prefetch = ProviderPrefetch.start(providerCaches, metrics.providerLoad());
+        ProviderCache<BankAccount> bankAccountCache = providerCaches.getBankAccounts();
+        ProviderCache<Bank> bankCache = providerCaches.getBanks();
+        IntFunction<Bank> bankById = bankId -> {
+            prefetch.awaitBanks();
+            return bankCache.get(bankId);
+        };
+
+        List<Contract> contracts = prefetch.awaitContracts();
+        if (journal != null) {
+            journal.open(ResumeJournal.datasetKey(contracts), ResumeJournal.maxContractId(contracts));
+        }
+        prefetch.awaitBankAccounts();
+        if (fingerprints != null) {
+            fingerprints.begin(contracts.size());
+        }
+
+        runContracts(new ContractIterator(contracts.iterator(), bankAccountCache::get), bankById);
+
+        LogSink.getDefault().flush();
+        providerCaches.printStatistics();
+        System.out.println("Time to first inkasso: " + getTimeToFirstInkasso(TimeUnit.MILLISECONDS) + " ms");
+        printResumeStatistics();
+        printRetryStatistics();
+    }
 
-        getContracts().parallelStream()
-                      .forEach(contract -> {
-                          BankAccount bankAccountForContract = bankAccountMap.get(contract.getBankAccountId());
-                          if (bankAccountForContract != null) {
-                              Bank bankForBankAccount = bankMap.get(bankAccountForContract.getBankId());
-                              processContract(contract, bankAccountForContract, bankForBankAccount);
-                          }
-                      });
+    /**
+     * Runs the batch off a columnar copy of the provider data instead of the provider objects.
+     */
+    public void runInkassoBatch(ContractStore store) {
+        runInkassoBatch(store, Integer.MIN_VALUE, Integer.MAX_VALUE);
     }
 
-    private void processContract(Contract contract, BankAccount bankAccountForContract, Bank bankForBankAccount) {
-        int currentInkassoCount = inkassoCount.incrementAndGet();
-        boolean inkassoSuccess = doInkassoInternal(bankAccountForContract);
-        if (currentInkassoCount % 1000 == 0) {
-            System.out.println("Current state: Completed " + currentInkassoCount + " Inkasso tasks");
+    /**
+     * Like {@link #runInkassoBatch(ContractStore)}, but only for the contracts with
+     * {@code fromContractId <= id < toContractId}, so that several batches can split one data set between them.
+     */
+    public void runInkassoBatch(ContractStore store, int fromContractId, int toContractId) {
+        batchStartNanos = System.nanoTime();
+        IntFunction<Bank> bankById = store::bankById;
+        if (journal != null) {
+            journal.open(ResumeJournal.datasetKey(store), ResumeJournal.maxContractId(store));
+        }
+        if (fingerprints != null) {
+            fingerprints.begin(store.contractCount());
         }
+        runContracts(new StoreRange(store, fromContractId, toContractId), bankById);
+        printResumeStatistics();
+        printRetryStatistics();
+    }
 
-        if (!inkassoSuccess) {
-            return;
+    /**
+     * Streams the contracts out of {@code file} instead of holding them in memory. The scheduler blocks once its
+     * queue is full, so only the contracts that are in flight are on the heap, plus the bounded caches of the file
+     * for the accounts and banks.
+     */
+    public void runInkassoBatch(ContractFile file) {
+        batchStartNanos = System.nanoTime();
+        IntFunction<Bank> bankById = file::bankById;
+        if (journal != null) {
+            journal.open(file.getDatasetKey(), file.getMaxContractId());
+        }
+        if (fingerprints != null) {
+            fingerprints.begin(file.getContractCount());
         }
+        runContracts(new ContractIterator(Spliterators.iterator(file.spliterator()), file::bankAccountById),
+                     bankById);
 
-        if (bankForBankAccount == null) {
-            System.err.println("No bank found for account " + bankAccountForContract.getNumber());
-            return;
+        LogSink.getDefault().flush();
+        System.out.println(file.getStatistics());
+        printResumeStatistics();
+        printRetryStatistics();
+    }
+
+    /**
+     * The loop all object batches share: leaves out the unchanged contracts of a delta run and submits the others,
+     * then waits for the scheduler. The journal and the fingerprint index have to be opened for the data set before.
+     */
+    private void runContracts(ContractCursor contracts, IntFunction<Bank> bankById) {
+        InkassoScheduler scheduler = newScheduler();
+        try {
+            while (contracts.next()) {
+                int position = contracts.position();
+                int contractId = contracts.contractId();
+                String policyHolderName = contracts.policyHolderName();
+                BankAccount bankAccount = contracts.bankAccount();
+                // a delta run has to know the bank up front, the others only ask for it after the inkasso
+                long fingerprint = fingerprints == null
+                                   ? 0
+                                   : fingerprint(contractId, policyHolderName, bankAccount,
+                                                 bankById.apply(bankAccount.getBankId()));
+                if (!leaveOutUnchanged(position, contractId, fingerprint)) {
+                    submit(scheduler, position, fingerprint, contractId, policyHolderName, bankAccount, bankById);
+                }
+            }
+        } catch (InterruptedException e) {
+            System.err.println(e.getLocalizedMessage());
+            Thread.currentThread().interrupt();
+        } finally {
+            awaitScheduler(scheduler);
         }
+        printDeltaStatistics();
+    }
 
-        printRequestsCount.incrementAndGet();
+    /**
+     * Allocation-free variant of {@link #runInkassoBatch(ContractStore)}: each inkasso thread claims chunks of
+     * contract indexes and reuses one {@link BankAccount} for all of its calls, and print requests go out as packed
+     * indexes into the same store, see {@link PrimitivePrint}. Inkasso services must not hold on to the account after
+     * the call returns. The resume journal is not consulted and failed calls are not retried.
+     */
+    public void runInkassoBatch(ContractStore store, PrintRequestChannel printRequests) {
+        batchStartNanos = System.nanoTime();
+        InkassoScheduler scheduler = newScheduler();
+        AtomicInteger cursor = new AtomicInteger();
         try {
-            printSystemMessageQueue.push(new PrintInputData(contract, bankForBankAccount, bankAccountForContract));
-        } catch (final InterruptedException e) {
+            for (int i = 0; i < scheduler.getParallelism(); i++) {
+                scheduler.submit(() -> processContracts(store, cursor, printRequests));
+            }
+        } catch (InterruptedException e) {
             System.err.println(e.getLocalizedMessage());
-            // swallow
+            Thread.currentThread().interrupt();
+        } finally {
+            awaitScheduler(scheduler);
         }
     }
 
-    private boolean doInkassoInternal(BankAccount bankAccount) {
-        if (turnToTheDarkSide) {
-            System.out.println("Inkasso done for account " + bankAccount.getNumber());
-            return true;
-        } else {
-            return InkassoSystem.doInkasso(bankAccount);
+    private void processContracts(ContractStore store, AtomicInteger cursor, PrintRequestChannel printRequests) {
+        BankAccount bankAccount = new BankAccount(0, 0, 0);
+        int contractCount = store.contractCount();
+        int start;
+        while ((start = cursor.getAndAdd(CONTRACT_CHUNK_SIZE)) < contractCount) {
+            int end = Math.min(contractCount, start + CONTRACT_CHUNK_SIZE);
+            for (int c = start; c < end; c++) {
+                int accountIndex = store.accountIndexOfContract(c);
+                if (accountIndex == ContractStore.NOT_FOUND) {
+                    continue;
+                }
+                bankAccount.setId(store.accountId(accountIndex));
+                bankAccount.setBankId(store.accountBankId(accountIndex));
+                bankAccount.setNumber(store.accountNumber(accountIndex));
+                if (!collect(bankAccount, 1)) {
+                    continue;
+                }
+                if (store.bankIndexOfAccount(accountIndex) == ContractStore.NOT_FOUND) {
+                    System.err.println("No bank found for account " + bankAccount.getNumber());
+                    continue;
+                }
+                try {
+                    printRequests.push(c, accountIndex);
+                } catch (InterruptedException e) {
+                    System.err.println(e.getLocalizedMessage());
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                printRequestsCount.increment();
+            }
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private Map<Integer, Bank> getBankMap() {
-        if (turnToTheDarkSide) {
-            try {
-                Field f = BankProvider.class.getDeclaredField("BANKS");
-                f.setAccessible(true);
-                return (Map<Integer, Bank>) f.get(null);
-            } catch (Exception e) {
-                return getBankMapNaive();
+    /**
+     * Leaves out what the journal has as printed and only asks for the print where the inkasso went through
+     * before.
+     *
+     * @param position of the contract in the batch, for the fingerprint index
+     */
+    private void submit(InkassoScheduler scheduler, int position, long fingerprint, int contractId,
+                        String policyHolderName, BankAccount bankAccountForContract, IntFunction<Bank> bankById)
+            throws InterruptedException {
+        if (journal != null && journal.isPrinted(contractId)) {
+            skippedCount.increment();
+            if (fingerprints != null) {
+                fingerprints.record(position, contractId, fingerprint);
             }
-        } else {
-            return getBankMapNaive();
+            return;
+        }
+        if (fingerprints != null) {
+            // the print worker records it once the confirmation is printed
+            fingerprints.prepare(position, contractId, fingerprint);
         }
+        int fingerprintSlot = fingerprints == null ? PrintInputData.NO_FINGERPRINT_SLOT : position;
+        boolean inkassoDone = journal != null && journal.isInkassoDone(contractId);
+        long submitted = System.nanoTime();
+        scheduler.submit(() -> {
+            metrics.inkassoSlotWait().recordSince(submitted);
+            if (inkassoDone) {
+                resumedPrintCount.increment();
+                requestPrint(contractId, fingerprintSlot, submitted, policyHolderName, bankAccountForContract,
+                             bankById);
+            } else {
+                processContract(scheduler, 1, contractId, fingerprintSlot, submitted, policyHolderName,
+                                bankAccountForContract, bankById);
+            }
+        });
     }
 
-    @SuppressWarnings("unchecked")
-    private Map<Integer, BankAccount> getBankAccountMap() {
-        if (turnToTheDarkSide) {
-            try {
-                Field f = BankAccountProvider.class.getDeclaredField("ACCOUNTS");
-                f.setAccessible(true);
-                return (Map<Integer, BankAccount>) f.get(null);
-            } catch (Exception e) {
-                return getBankAccountMapNaive();
+    private static long fingerprint(int contractId, String policyHolderName, BankAccount bankAccount, Bank bank) {
+        return FingerprintIndex.fingerprint(contractId, bankAccount.getId(), policyHolderName, bankAccount.getBankId(),
+                                            bankAccount.getNumber(), bank == null ? null : bank.getName());
+    }
+
+    /**
+     * Carries an unchanged contract over to the next generation of the fingerprint index instead of processing it.
+     */
+    private boolean leaveOutUnchanged(int position, int contractId, long fingerprint) {
+        if (fingerprints == null || !fingerprints.isUnchanged(contractId, fingerprint)) {
+            return false;
+        }
+        fingerprints.record(position, contractId, fingerprint);
+        unchangedCount.increment();
+        return true;
+    }
+
+    private void printDeltaStatistics() {
+        if (fingerprints != null) {
+            System.out.println("Delta run: " + getUnchangedCount() + " unchanged contracts left out");
+        }
+    }
+
+    private void printRetryStatistics() {
+        if (inkassoRetries != null) {
+            inkassoRetries.printReport();
+        }
+    }
+
+    private void printResumeStatistics() {
+        if (journal != null) {
+            System.out.println("Resumed from journal: " + getSkippedCount() + " contracts already printed, "
+                                       + getResumedPrintCount() + " prints requested again");
+        }
+    }
+
+    private InkassoScheduler newScheduler() {
+        if (inkassoLimit != null) {
+            // the limit decides how many of them call at once
+            return new InkassoScheduler(inkassoLimit.getMaxLimit());
+        }
+        if (concurrency > 0) {
+            return new InkassoScheduler(concurrency);
+        }
+        // InkassoSystem only admits a fixed number of callers, more threads would just park on its semaphore
+        return turnToTheDarkSide
+                ? new InkassoScheduler(Runtime.getRuntime().availableProcessors())
+                : InkassoScheduler.forInkassoSystem();
+    }
+
+    private void awaitScheduler(InkassoScheduler scheduler) {
+        try {
+            if (inkassoRetries != null) {
+                // retries are submitted to the scheduler, so it has to run until the last of them is over
+                scheduler.awaitIdle();
+                inkassoRetries.awaitIdle();
             }
-        } else {
-            return getBankAccountMapNaive();
+            scheduler.shutdownAndAwait();
+        } catch (InterruptedException e) {
+            System.err.println(e.getLocalizedMessage());
+            Thread.currentThread().interrupt();
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private Collection<Contract> getContracts() {
-        if (turnToTheDarkSide) {
+    /**
+     * Runs on the scheduler. A failed inkasso comes back here through the retry scheduler, as a new task.
+     *
+     * @param attempt          1 for the first call
+     * @param bankById         only asked after a successful inkasso, so the banks may still be loading when this
+     *                         starts
+     * @param fingerprintSlot  handed on with the print request
+     */
+    /**
+     * @param submittedNanos when the contract was handed to the scheduler, passed on to the print request
+     */
+    private void processContract(InkassoScheduler scheduler, int attempt, int contractId, int fingerprintSlot,
+                                 long submittedNanos, String policyHolderName, BankAccount bankAccountForContract,
+                                 IntFunction<Bank> bankById) {
+        boolean collected = false;
+        try {
+            collected = collect(bankAccountForContract, attempt);
+            if (!collected && inkassoRetries != null) {
+                inkassoRetries.retry(contractId, attempt, "inkasso failed", nextAttempt -> scheduler.trySubmit(
+                        () -> processContract(scheduler, nextAttempt, contractId, fingerprintSlot, submittedNanos,
+                                              policyHolderName, bankAccountForContract, bankById)));
+            }
+        } finally {
+            // after the next retry is scheduled, so that the retries never look done in between
+            if (attempt > 1) {
+                inkassoRetries.attemptDone(collected);
+            }
+        }
+        if (!collected) {
+            return;
+        }
+        if (journal != null) {
+            journal.markInkassoDone(contractId);
+        }
+        requestPrint(contractId, fingerprintSlot, submittedNanos, policyHolderName, bankAccountForContract, bankById);
+    }
+
+    /**
+     * Only the first attempt counts as an inkasso, retries are counted by the retry scheduler.
+     */
+    private boolean collect(BankAccount bankAccount, int attempt) {
+        long limitedCallStart = 0;
+        if (inkassoLimit != null) {
             try {
-                Field f = ContractProvider.class.getDeclaredField("CONTRACTS");
-                f.setAccessible(true);
-                Map<Integer, Contract> k = (Map<Integer, Contract>) f.get(null);
-                return k.values();
-            } catch (Exception e) {
-                return ContractProvider.getContracts();
+                limitedCallStart = inkassoLimit.acquire();
+            } catch (InterruptedException e) {
+                System.err.println("Inkasso for account " + bankAccount.getNumber() + " was interrupted");
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        if (firstInkassoNanos.get() == 0) {
+            firstInkassoNanos.compareAndSet(0, System.nanoTime());
+        }
+        if (attempt == 1) {
+            inkassoCount.increment();
+            if (inkassoRetries != null) {
+                inkassoRetries.recordCall();
+            }
+        }
+        metrics.inkassoInFlight().increment();
+        long callStart = System.nanoTime();
+        boolean inkassoSuccess;
+        try {
+            inkassoSuccess = inkassoService.doInkasso(bankAccount);
+        } finally {
+            metrics.inkassoCall().recordSince(callStart);
+            metrics.inkassoInFlight().decrement();
+            if (inkassoLimit != null) {
+                inkassoLimit.release(limitedCallStart);
+            }
+        }
+        logProgress();
+        return inkassoSuccess;
+    }
+
+    private void requestPrint(int contractId, int fingerprintSlot, long submittedNanos, String policyHolderName,
+                              BankAccount bankAccountForContract, IntFunction<Bank> bankById) {
+        Bank bankForBankAccount = bankById.apply(bankAccountForContract.getBankId());
+        if (bankForBankAccount == null) {
+            System.err.println("No bank found for account " + bankAccountForContract.getNumber());
+            return;
+        }
+
+        try {
+            printSystemMessageQueue.push(new PrintInputData(contractId, policyHolderName, bankForBankAccount,
+                                                            bankAccountForContract, fingerprintSlot,
+                                                            submittedNanos));
+        } catch (final InterruptedException e) {
+            // the inkasso went through, but the confirmation will not be printed
+            System.err.println("Interrupted while requesting the print for contract " + contractId);
+            if (inkassoRetries != null) {
+                inkassoRetries.deadLetter(contractId, 1, "interrupted while requesting the print");
             }
-        } else {
-            return ContractProvider.getContracts();
+            Thread.currentThread().interrupt();
+            return;
         }
+        printRequestsCount.increment();
     }
 
-    private Map<Integer, Bank> getBankMapNaive() {
-        return BankProvider.getBanks()
-                           .stream()
-                           .collect(Collectors.toMap(Bank::getId, Function.identity()));
+    /**
+     * A striped counter has no increment-and-get, so whoever first sees the count pass the next mark logs it.
+     */
+    private void logProgress() {
+        long mark = nextProgressMark.get();
+        long currentInkassoCount = inkassoCount.sum();
+        if (currentInkassoCount >= mark && nextProgressMark.compareAndSet(mark, mark + PROGRESS_INTERVAL)) {
+            LogSink.getDefault().logProgress((int) mark);
+        }
     }
 
-    private Map<Integer, BankAccount> getBankAccountMapNaive() {
-        return BankAccountProvider.getAccounts()
-                                  .stream()
-                                  .collect(Collectors.toMap(BankAccount::getId, Function.identity()));
+
+    /**
+     * The contracts of a batch that have a bank account, one at a time. {@link #position()} counts all contracts of
+     * the data set, including those without account, so that it stays the same from run to run.
+     */
+    private interface ContractCursor {
+
+        /**
+         * @return false once there are no more contracts
+         */
+        boolean next();
+
+        int position();
+
+        int contractId();
+
+        String policyHolderName();
+
+        BankAccount bankAccount();
     }
 
+    /**
+     * Over contract objects, from the providers or streamed from a file.
+     */
+    private static final class ContractIterator implements ContractCursor {
+
+        private final Iterator<Contract> contracts;
+        private final IntFunction<BankAccount> bankAccountById;
+        private int position = -1;
+        private Contract contract;
+        private BankAccount bankAccount;
+
+        private ContractIterator(Iterator<Contract> contracts, IntFunction<BankAccount> bankAccountById) {
+            this.contracts = contracts;
+            this.bankAccountById = bankAccountById;
+        }
+
+        @Override
+        public boolean next() {
+            while (contracts.hasNext()) {
+                contract = contracts.next();
+                position++;
+                bankAccount = contract.getBankAccountId() == null
+                              ? null
+                              : bankAccountById.apply(contract.getBankAccountId());
+                if (bankAccount != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int position() {
+            return position;
+        }
+
+        @Override
+        public int contractId() {
+            return contract.getId();
+        }
+
+        @Override
+        public String policyHolderName() {
+            return contract.getPolicyHolderName();
+        }
+
+        @Override
+        public BankAccount bankAccount() {
+            return bankAccount;
+        }
+    }
+
+    /**
+     * Over the contracts of a store with {@code fromContractId <= id < toContractId}, the position is the index.
+     */
+    private static final class StoreRange implements ContractCursor {
+
+        private final ContractStore store;
+        private final int fromContractId;
+        private final int toContractId;
+        private int index = -1;
+        private int accountIndex;
+
+        private StoreRange(ContractStore store, int fromContractId, int toContractId) {
+            this.store = store;
+            this.fromContractId = fromContractId;
+            this.toContractId = toContractId;
+        }
+
+        @Override
+        public boolean next() {
+            while (++index < store.contractCount()) {
+                int contractId = store.contractId(index);
+                if (contractId < fromContractId || contractId >= toContractId) {
+                    continue;
+                }
+                accountIndex = store.accountIndexOfContract(index);
+                if (accountIndex != ContractStore.NOT_FOUND) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int position() {
+            return index;
+        }
+
+        @Override
+        public int contractId() {
+            return store.contractId(index);
+        }
+
+        @Override
+        public String policyHolderName() {
+            return store.policyHolderName(index);
+        }
+
+        @Override
+        public BankAccount bankAccount() {
+            return store.bankAccount(accountIndex);
+        }
+    }
 }
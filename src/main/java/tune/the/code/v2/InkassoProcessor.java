@@ -0,0 +1,209 @@
+package tune.the.code.v2;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The inkasso stage of a {@link ReactiveBatch}: collects every incoming request and passes on those that went
+ * through. It asks upstream for {@code prefetch} requests and for one more whenever a worker takes one, so no more
+ * than {@code prefetch} wait for a worker. Collected requests wait in a buffer of {@code bufferSize} until
+ * downstream asks for them. Once that buffer is full, the workers block, take no more requests and thereby ask for
+ * no more, which is how a slow print stage throttles inkasso.
+ * <p>
+ * The end of the input is an end-of-stream marker behind the last request, as in {@link MessageQueue}, so the
+ * workers block on the requests without a timeout. An upstream error reaches the subscriber after the requests that
+ * were collected before it.
+ * <p>
+ * Has exactly one subscriber, which has to subscribe before the processor subscribes upstream.
+ *
+ * @since 18.10.2026
+ */
+public class InkassoProcessor implements Flow.Processor<PrintInputData, PrintInputData> {
+
+    private static final PrintInputData END_OF_STREAM = new PrintInputData(PrintInputData.NO_CONTRACT_ID, null, null,
+                                                                           null);
+
+    private final InkassoService inkassoService;
+    private final int parallelism;
+    private final int prefetch;
+    private final ExecutionBackend executionBackend;
+    private final BatchMetrics metrics;
+
+    private final BlockingQueue<PrintInputData> inbound;
+    private final BlockingQueue<PrintInputData> outbound;
+    private final AtomicInteger consumedSinceRequest = new AtomicInteger();
+    private final AtomicInteger runningWorkers;
+    private final LongAdder inkassoCount = new LongAdder();
+    private final LongAdder printRequestsCount = new LongAdder();
+
+    private final AtomicBoolean inboundEnded = new AtomicBoolean();
+
+    private volatile Flow.Subscription upstream;
+    private volatile DemandEmitter<PrintInputData> downstream;
+    private volatile Throwable upstreamFailure;
+
+    /**
+     * @param parallelism number of inkasso calls in flight
+     * @param prefetch    requests taken from upstream ahead of the workers
+     * @param bufferSize  collected requests held back until downstream asks for them
+     */
+    public InkassoProcessor(InkassoService inkassoService, int parallelism, int prefetch, int bufferSize,
+                            ExecutionBackend executionBackend, BatchMetrics metrics) {
+        if (parallelism < 1 || prefetch < 1 || bufferSize < 1) {
+            throw new IllegalArgumentException("parallelism, prefetch and bufferSize must be positive");
+        }
+        this.inkassoService = inkassoService;
+        this.parallelism = parallelism;
+        this.prefetch = prefetch;
+        this.executionBackend = executionBackend;
+        this.metrics = metrics;
+        // room for the end-of-stream marker on top of what was requested
+        this.inbound = new ArrayBlockingQueue<>(prefetch + 1);
+        this.outbound = new ArrayBlockingQueue<>(bufferSize);
+        this.runningWorkers = new AtomicInteger(parallelism);
+        metrics.registerGauge("inkasso.flowInbound", inbound::size);
+        metrics.registerGauge("inkasso.flowOutbound", outbound::size);
+    }
+
+    public int getInkassoCount() {
+        return inkassoCount.intValue();
+    }
+
+    public int getPrintRequestsCount() {
+        return printRequestsCount.intValue();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super PrintInputData> subscriber) {
+        if (downstream != null) {
+            throw new IllegalStateException("InkassoProcessor only supports one subscriber");
+        }
+        DemandEmitter.Source<PrintInputData> collected = new DemandEmitter.Source<PrintInputData>() {
+            @Override
+            public PrintInputData poll() {
+                return outbound.poll();
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return outbound.isEmpty();
+            }
+        };
+        DemandEmitter<PrintInputData> emitter = new DemandEmitter<>(subscriber, collected, this::cancelUpstream);
+        downstream = emitter;
+        emitter.start();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (downstream == null) {
+            throw new IllegalStateException("Subscribe to the InkassoProcessor before it subscribes upstream");
+        }
+        upstream = subscription;
+        for (int i = 0; i < parallelism; i++) {
+            executionBackend.start("inkasso-flow-" + i, this::work);
+        }
+        subscription.request(prefetch);
+    }
+
+    @Override
+    public void onNext(PrintInputData item) {
+        if (!inbound.offer(item)) {
+            // cannot happen unless upstream sends more than was requested
+            System.err.println("Inkasso stage got more requests than it asked for, dropping contract "
+                                       + item.getContractId());
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        System.err.println("Contract source failed: " + throwable);
+        upstreamFailure = throwable;
+        endInbound();
+    }
+
+    @Override
+    public void onComplete() {
+        endInbound();
+    }
+
+    private void cancelUpstream() {
+        Flow.Subscription subscription = upstream;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+        endInbound();
+    }
+
+    /**
+     * Upstream only sends what was requested, so there is always room for the marker.
+     */
+    private void endInbound() {
+        if (inboundEnded.compareAndSet(false, true)) {
+            inbound.offer(END_OF_STREAM);
+        }
+    }
+
+    private void work() {
+        try {
+            while (!downstream.isCancelled()) {
+                PrintInputData request = inbound.take();
+                if (request == END_OF_STREAM) {
+                    // put back for the other workers
+                    inbound.put(END_OF_STREAM);
+                    break;
+                }
+                requestMore();
+                if (collect(request)) {
+                    outbound.put(request);
+                    printRequestsCount.increment();
+                    downstream.drain();
+                }
+            }
+        } catch (InterruptedException e) {
+            System.err.println("Inkasso worker was interrupted");
+            Thread.currentThread().interrupt();
+        } finally {
+            if (runningWorkers.decrementAndGet() == 0) {
+                Throwable failure = upstreamFailure;
+                if (failure == null) {
+                    downstream.complete();
+                } else {
+                    downstream.fail(failure);
+                }
+            }
+        }
+    }
+
+    /**
+     * Asks for half the prefetch at once rather than for every single request.
+     */
+    private void requestMore() {
+        int batch = Math.max(1, prefetch / 2);
+        if (consumedSinceRequest.incrementAndGet() == batch) {
+            consumedSinceRequest.addAndGet(-batch);
+            upstream.request(batch);
+        }
+    }
+
+    private boolean collect(PrintInputData request) {
+        inkassoCount.increment();
+        metrics.inkassoInFlight().increment();
+        long callStart = System.nanoTime();
+        boolean inkassoSuccess;
+        try {
+            inkassoSuccess = inkassoService.doInkasso(request.getBankAccount());
+        } finally {
+            metrics.inkassoCall().recordSince(callStart);
+            metrics.inkassoInFlight().decrement();
+        }
+        if (inkassoSuccess && request.getBank() == null) {
+            System.err.println("No bank found for account " + request.getBankAccount().getNumber());
+            return false;
+        }
+        return inkassoSuccess;
+    }
+}
@@ -0,0 +1,139 @@
+package tune.the.code.v2;
+
+import config.Config;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dedicated execution engine for inkasso calls. Instead of flooding the common ForkJoinPool, it owns exactly as
+ * many worker threads as the downstream system admits callers, plus a bounded submission queue. Producers block
+ * in {@link #submit(Runnable)} once the queue is full, so the number of pending tasks never exceeds
+ * {@code parallelism + queueCapacity}.
+ *
+ * @since 18.10.2026
+ */
+public class InkassoScheduler {
+
+    private static final int QUEUE_CAPACITY_PER_WORKER = 64;
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore submissionPermits;
+    private final AtomicInteger unfinishedTasks = new AtomicInteger();
+    private final Object idle = new Object();
+
+    public InkassoScheduler(int parallelism) {
+        this(parallelism, parallelism * QUEUE_CAPACITY_PER_WORKER);
+    }
+
+    public InkassoScheduler(int parallelism, int queueCapacity) {
+        if (parallelism < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("parallelism and queueCapacity must be positive");
+        }
+        this.submissionPermits = new Semaphore(queueCapacity);
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                                               new ArrayBlockingQueue<>(queueCapacity),
+                                               new WorkerThreadFactory("inkasso-worker-"));
+    }
+
+    /**
+     * Sized to the semaphore of {@link system.InkassoSystem}, which keeps exactly that many calls in flight.
+     */
+    public static InkassoScheduler forInkassoSystem() {
+        return new InkassoScheduler(Config.INKASSO_CAPABILITIES);
+    }
+
+    public int getParallelism() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * Blocks while the submission queue is full.
+     */
+    public void submit(Runnable task) throws InterruptedException {
+        submissionPermits.acquire();
+        execute(task);
+    }
+
+    /**
+     * Like {@link #submit(Runnable)}, but gives up right away if the submission queue is full.
+     *
+     * @return false if the task was not submitted
+     */
+    public boolean trySubmit(Runnable task) {
+        if (!submissionPermits.tryAcquire()) {
+            return false;
+        }
+        execute(task);
+        return true;
+    }
+
+    private void execute(Runnable task) {
+        unfinishedTasks.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                // the task has left the queue, so its slot may be reused right away
+                submissionPermits.release();
+                try {
+                    task.run();
+                } finally {
+                    taskFinished();
+                }
+            });
+        } catch (RuntimeException e) {
+            submissionPermits.release();
+            taskFinished();
+            throw e;
+        }
+    }
+
+    private void taskFinished() {
+        if (unfinishedTasks.decrementAndGet() == 0) {
+            synchronized (idle) {
+                idle.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits until every task submitted so far is done, but keeps accepting new ones.
+     */
+    public void awaitIdle() throws InterruptedException {
+        synchronized (idle) {
+            while (unfinishedTasks.get() != 0) {
+                idle.wait();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting new tasks and waits until all submitted tasks are done.
+     */
+    public void shutdownAndAwait() throws InterruptedException {
+        executor.shutdown();
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            // keep waiting, a large batch may well take longer than a minute
+        }
+    }
+
+    static class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger(0);
+        private final String namePrefix;
+
+        WorkerThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, namePrefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package tune.the.code.v2;
+
+import datamodel.BankAccount;
+import system.InkassoSystem;
+
+/**
+ * The downstream inkasso system as seen by {@link InkassoBatch}. Lets benchmarks and simulations replace the static
+ * {@link InkassoSystem} with an in-process fake.
+ *
+ * @since 18.10.2026
+ */
+@FunctionalInterface
+public interface InkassoService {
+
+    InkassoService SYSTEM = InkassoSystem::doInkasso;
+
+    /**
+     * Does not call the inkasso system at all, only logs what it would have done.
+     */
+    InkassoService DARK_SIDE = bankAccount -> {
+        LogSink.getDefault().logInkassoDone(bankAccount.getNumber());
+        return true;
+    };
+
+    boolean doInkasso(BankAccount bankAccount);
+
+    /**
+     * Only calls {@code service} once {@code tenant} got one of the permits it shares with other batches. A call
+     * interrupted while waiting for the permit fails.
+     */
+    static InkassoService sharing(InkassoService service, FairShareScheduler.Tenant tenant) {
+        return bankAccount -> {
+            try {
+                tenant.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            try {
+                return service.doInkasso(bankAccount);
+            } finally {
+                tenant.release();
+            }
+        };
+    }
+}
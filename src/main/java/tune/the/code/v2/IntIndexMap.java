@@ -0,0 +1,127 @@
+package tune.the.code.v2;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from an int key to a non-negative int index, with linear probing on two primitive arrays.
+ * No boxing and no entry objects, as opposed to a {@code HashMap<Integer, Integer>}. Keys cannot be removed.
+ *
+ * @since 18.10.2026
+ */
+public class IntIndexMap {
+
+    public static final int NOT_FOUND = -1;
+
+    private static final int FREE = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    public IntIndexMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * Takes over the tables of another map as returned by {@link #keys()} and {@link #values()}, e.g. read back from
+     * a {@link ProviderSnapshot}.
+     */
+    IntIndexMap(int[] keys, int[] values, int size) {
+        if (keys.length != values.length || Integer.bitCount(keys.length) != 1 || size * 2 > keys.length) {
+            throw new IllegalArgumentException("Not the tables of an IntIndexMap");
+        }
+        this.keys = keys;
+        this.values = values;
+        this.mask = keys.length - 1;
+        this.size = size;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        // load factor of at most 0.5 keeps probe sequences short
+        int capacity = Integer.highestOneBit(Math.max(2, expectedSize) * 2 - 1) << 1;
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("expectedSize too large: " + expectedSize);
+        }
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, FREE);
+        mask = capacity - 1;
+    }
+
+    private static int mix(int key) {
+        // murmur3 finalizer, spreads sequential ids over the whole table
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * @return the previous index for the key or {@link #NOT_FOUND}
+     */
+    public int put(int key, int index) {
+        if (index < 0) {
+            throw new IllegalArgumentException("index must not be negative");
+        }
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        int slot = mix(key) & mask;
+        while (values[slot] != FREE) {
+            if (keys[slot] == key) {
+                int previous = values[slot];
+                values[slot] = index;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = index;
+        size++;
+        return NOT_FOUND;
+    }
+
+    public int get(int key) {
+        int slot = mix(key) & mask;
+        int value;
+        while ((value = values[slot]) != FREE) {
+            if (keys[slot] == key) {
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    int[] keys() {
+        return keys;
+    }
+
+    int[] values() {
+        return values;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != FREE) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
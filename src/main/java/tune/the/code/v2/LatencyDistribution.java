@@ -0,0 +1,98 @@
+package tune.the.code.v2;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service time of a {@link SimulatedSystem}, drawn independently for every call.
+ *
+ * @since 18.10.2026
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    long sampleNanos();
+
+    static LatencyDistribution fixed(long duration, TimeUnit unit) {
+        long nanos = unit.toNanos(duration);
+        return () -> nanos;
+    }
+
+    static LatencyDistribution uniform(long min, long max, TimeUnit unit) {
+        long minNanos = unit.toNanos(min);
+        long maxNanos = unit.toNanos(max);
+        if (maxNanos < minNanos) {
+            throw new IllegalArgumentException("max must not be smaller than min");
+        }
+        return () -> minNanos + (long) (ThreadLocalRandom.current().nextDouble() * (maxNanos - minNanos));
+    }
+
+    /**
+     * Memoryless, most calls are fast and a few are several times the mean.
+     */
+    static LatencyDistribution exponential(long mean, TimeUnit unit) {
+        double meanNanos = unit.toNanos(mean);
+        return () -> (long) (-meanNanos * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+    }
+
+    /**
+     * Long-tailed, the usual shape of remote call latencies.
+     *
+     * @param sigma standard deviation of the underlying normal distribution, 0.5 gives a p99 of about 3x the median
+     */
+    static LatencyDistribution logNormal(long median, TimeUnit unit, double sigma) {
+        double medianNanos = unit.toNanos(median);
+        return () -> (long) (medianNanos * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    /**
+     * Parses {@code fixed:20ms}, {@code uniform:10ms:30ms}, {@code exponential:20ms} or
+     * {@code lognormal:20ms:0.5}. Durations take the units {@code ns}, {@code us}, {@code ms} and {@code s}.
+     */
+    static LatencyDistribution parse(String spec) {
+        String[] parts = spec.trim().split(":");
+        try {
+            switch (parts[0]) {
+                case "fixed":
+                    if (parts.length == 2) {
+                        return fixed(parseNanos(parts[1]), TimeUnit.NANOSECONDS);
+                    }
+                    break;
+                case "uniform":
+                    if (parts.length == 3) {
+                        return uniform(parseNanos(parts[1]), parseNanos(parts[2]), TimeUnit.NANOSECONDS);
+                    }
+                    break;
+                case "exponential":
+                    if (parts.length == 2) {
+                        return exponential(parseNanos(parts[1]), TimeUnit.NANOSECONDS);
+                    }
+                    break;
+                case "lognormal":
+                    if (parts.length == 3) {
+                        return logNormal(parseNanos(parts[1]), TimeUnit.NANOSECONDS, Double.parseDouble(parts[2]));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid latency distribution: " + spec, e);
+        }
+        throw new IllegalArgumentException("Invalid latency distribution: " + spec);
+    }
+
+    static long parseNanos(String duration) {
+        String d = duration.trim();
+        if (d.endsWith("ns")) {
+            return Long.parseLong(d.substring(0, d.length() - 2));
+        } else if (d.endsWith("us")) {
+            return TimeUnit.MICROSECONDS.toNanos(Long.parseLong(d.substring(0, d.length() - 2)));
+        } else if (d.endsWith("ms")) {
+            return TimeUnit.MILLISECONDS.toNanos(Long.parseLong(d.substring(0, d.length() - 2)));
+        } else if (d.endsWith("s")) {
+            return TimeUnit.SECONDS.toNanos(Long.parseLong(d.substring(0, d.length() - 1)));
+        }
+        throw new NumberFormatException("Duration without unit: " + duration);
+    }
+}
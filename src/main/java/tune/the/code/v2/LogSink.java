@@ -0,0 +1,345 @@
+package tune.the.code.v2;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous line log. {@link java.io.PrintStream} is synchronized, so at high rates all workers serialize on
+ * {@code System.out}. Here a producer only formats the line in a thread-local buffer and hands it over to a
+ * lock-free {@link RingBufferQueue}. A single writer thread drains the queue in batches, encodes them into one
+ * buffer and issues one write per batch to stdout or a {@link FileChannel}.
+ * <p>
+ * Producers never wake the writer. It parks with a growing back-off while idle, so lines may appear a few
+ * milliseconds late; {@link #flush()} waits until everything logged before has been written.
+ * <p>
+ * Once a write fails, the sink drops every line from then on, reported by {@link #getFailure()}, and the writer
+ * only keeps the hand-off buffer moving, so that neither producers nor {@link #flush()} wait for it forever.
+ *
+ * @since 18.10.2026
+ */
+public class LogSink implements AutoCloseable {
+
+    /**
+     * What {@link #log(String)} does when the hand-off buffer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Waits for the writer, no line is lost.
+         */
+        BLOCK,
+        /**
+         * Discards the line.
+         */
+        DROP,
+        /**
+         * Discards the line and reports the number of discarded lines when flushing.
+         */
+        COUNT
+    }
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final long MIN_IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long FLUSH_CHECK_MILLIS = 100;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private static final ThreadLocal<StringBuilder> FORMAT_BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(128));
+
+    private static volatile LogSink defaultSink;
+
+    private final RingBufferQueue<Object> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final WritableByteChannel channel;
+    private final boolean closeChannel;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    // only used by the writer thread
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private long reportedDropped;
+
+    private LogSink(WritableByteChannel channel, boolean closeChannel, int capacity, OverflowPolicy overflowPolicy) {
+        this.queue = new RingBufferQueue<>(capacity, WaitStrategy.BLOCKING);
+        this.overflowPolicy = overflowPolicy;
+        this.channel = channel;
+        this.closeChannel = closeChannel;
+        this.writer = new Thread(this::writeLoop, "log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public static LogSink stdout(int capacity, OverflowPolicy overflowPolicy) {
+        return new LogSink(Channels.newChannel(new FileOutputStream(FileDescriptor.out)), false, capacity,
+                           overflowPolicy);
+    }
+
+    public static LogSink file(Path path, int capacity, OverflowPolicy overflowPolicy) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                               StandardOpenOption.APPEND);
+        return new LogSink(channel, true, capacity, overflowPolicy);
+    }
+
+    /**
+     * The sink behind the progress and confirmation lines of the batch: stdout, never losing a line. Flushed when
+     * the JVM exits.
+     */
+    public static LogSink getDefault() {
+        LogSink sink = defaultSink;
+        if (sink == null) {
+            synchronized (LogSink.class) {
+                sink = defaultSink;
+                if (sink == null) {
+                    sink = stdout(DEFAULT_CAPACITY, OverflowPolicy.BLOCK);
+                    Runtime.getRuntime().addShutdownHook(new Thread(sink::close, "log-flush"));
+                    defaultSink = sink;
+                }
+            }
+        }
+        return sink;
+    }
+
+    // -------------------------------------------------------------------------
+    // Producer side
+    // -------------------------------------------------------------------------
+
+    public void log(String line) {
+        if (closed) {
+            return;
+        }
+        if (failure != null) {
+            dropped.increment();
+            return;
+        }
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                queue.put(line);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else if (!queue.offer(line)) {
+            dropped.increment();
+        }
+    }
+
+    public void logInkassoDone(int accountNumber) {
+        if (acceptsMore()) {
+            log(formatBuffer().append("Inkasso done for account ").append(accountNumber).toString());
+        }
+    }
+
+    public void logProgress(int completedInkassoTasks) {
+        if (acceptsMore()) {
+            log(formatBuffer().append("Current state: Completed ").append(completedInkassoTasks)
+                              .append(" Inkasso tasks").toString());
+        }
+    }
+
+    public void logConfirmation(String policyHolderName, int accountNumber, String bankName) {
+        if (acceptsMore()) {
+            log(formatBuffer().append("Printed confirmation for contract holder '").append(policyHolderName)
+                              .append("', account ").append(accountNumber).append(" at ").append(bankName)
+                              .toString());
+        }
+    }
+
+    /**
+     * Skips formatting a line that would be dropped anyway.
+     */
+    private boolean acceptsMore() {
+        if (overflowPolicy != OverflowPolicy.BLOCK && queue.remainingCapacity() == 0) {
+            dropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private static StringBuilder formatBuffer() {
+        StringBuilder sb = FORMAT_BUFFER.get();
+        sb.setLength(0);
+        return sb;
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return why the writer stopped writing, null as long as it writes
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Waits until every line logged before this call has been written. Returns right away once the writer has
+     * failed, and gives up if the writer thread is gone.
+     */
+    public void flush() {
+        if (closed || failure != null || Thread.currentThread() == writer) {
+            return;
+        }
+        CountDownLatch written = new CountDownLatch(1);
+        try {
+            queue.put(written);
+            LockSupport.unpark(writer);
+            while (!written.await(FLUSH_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (!writer.isAlive()) {
+                    System.err.println("Log writer is gone, could not flush");
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes everything logged so far and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Writer side
+    // -------------------------------------------------------------------------
+
+    private void writeLoop() {
+        List<Object> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        long idlePark = MIN_IDLE_PARK_NANOS;
+        try {
+            while (true) {
+                if (queue.drainTo(batch, MAX_BATCH_SIZE) == 0) {
+                    if (closed && queue.isEmpty()) {
+                        break;
+                    }
+                    LockSupport.parkNanos(this, idlePark);
+                    idlePark = Math.min(MAX_IDLE_PARK_NANOS, idlePark * 2);
+                    continue;
+                }
+                idlePark = MIN_IDLE_PARK_NANOS;
+                for (Object element : batch) {
+                    if (element instanceof CountDownLatch) {
+                        writeDroppedCount();
+                        writeBuffer();
+                        ((CountDownLatch) element).countDown();
+                    } else {
+                        encode((String) element);
+                    }
+                }
+                batch.clear();
+                writeBuffer();
+            }
+            writeDroppedCount();
+            writeBuffer();
+            if (closeChannel) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            failure = e;
+            System.err.println("Log writer failed, dropping all further lines: " + e.getLocalizedMessage());
+            discardLoop(batch);
+        }
+    }
+
+    /**
+     * Keeps taking what producers hand over after a failed write, so that none of them blocks on a full buffer,
+     * and releases the waiting flushes.
+     */
+    private void discardLoop(List<Object> batch) {
+        // the rest of the batch that failed first, a flush in it may already be released, which does no harm
+        long idlePark = MIN_IDLE_PARK_NANOS;
+        do {
+            for (Object element : batch) {
+                if (element instanceof CountDownLatch) {
+                    ((CountDownLatch) element).countDown();
+                } else {
+                    dropped.increment();
+                }
+            }
+            batch.clear();
+            if (queue.drainTo(batch, MAX_BATCH_SIZE) == 0) {
+                if (closed && queue.isEmpty()) {
+                    break;
+                }
+                LockSupport.parkNanos(this, idlePark);
+                idlePark = Math.min(MAX_IDLE_PARK_NANOS, idlePark * 2);
+            } else {
+                idlePark = MIN_IDLE_PARK_NANOS;
+            }
+        } while (true);
+        if (closeChannel) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // already failed
+            }
+        }
+    }
+
+    private void writeDroppedCount() throws IOException {
+        long total = dropped.sum();
+        if (overflowPolicy == OverflowPolicy.COUNT && total > reportedDropped) {
+            encode((total - reportedDropped) + " log lines dropped");
+            reportedDropped = total;
+        }
+    }
+
+    private void encode(String line) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(line);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                writeBuffer();
+            } else {
+                break;
+            }
+        }
+        if (buffer.remaining() < LINE_SEPARATOR.length) {
+            writeBuffer();
+        }
+        buffer.put(LINE_SEPARATOR);
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
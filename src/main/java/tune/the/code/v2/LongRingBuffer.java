@@ -0,0 +1,229 @@
+package tune.the.code.v2;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link RingBufferQueue} for primitive longs: the same sequence-per-slot algorithm on a pre-allocated
+ * {@code long[]}, so neither the elements nor the queue itself allocate anything.
+ * <p>
+ * A thread that finds the buffer full or empty waits according to its {@link WaitStrategy}, exactly like on a
+ * {@link RingBufferQueue}. With {@link WaitStrategy#BLOCKING} it parks on a condition until the other side signals,
+ * which only allocates a wait node when a thread actually has to park, never per element.
+ *
+ * @since 18.10.2026
+ */
+public class LongRingBuffer {
+
+    private static final int SPIN_TRIES = 100;
+
+    private final int capacity;
+    private final int mask;
+    private final long[] buffer;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final WaitStrategy waitStrategy;
+
+    // only used by WaitStrategy.BLOCKING
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final AtomicInteger waitingConsumers = new AtomicInteger();
+    private final AtomicInteger waitingProducers = new AtomicInteger();
+
+    public LongRingBuffer(int capacity) {
+        this(capacity, WaitStrategy.BLOCKING);
+    }
+
+    /**
+     * @param capacity is rounded up to the next power of two
+     */
+    public LongRingBuffer(int capacity, WaitStrategy waitStrategy) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30, was " + capacity);
+        }
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.buffer = new long[this.capacity];
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.waitStrategy = waitStrategy;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        // read head first, so that a concurrent consumer can only make the result too large, never negative
+        long h = head.get();
+        long t = tail.get();
+        return (int) Math.max(0, Math.min(capacity, t - h));
+    }
+
+    /**
+     * @return false if the buffer is full
+     */
+    public boolean offer(long value) {
+        while (true) {
+            long pos = tail.get();
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buffer[index] = value;
+                    // the volatile write publishes the plain write to the buffer
+                    sequences.set(index, pos + 1);
+                    signalConsumer();
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false;
+            }
+            // else: another producer claimed this slot, reload tail
+        }
+    }
+
+    public void put(long value) throws InterruptedException {
+        for (int attempt = 0; !offer(value); attempt++) {
+            await(attempt, true);
+        }
+    }
+
+    /**
+     * Takes up to {@code maxElements} values without waiting.
+     *
+     * @return the number of values written to the start of {@code into}
+     */
+    public int drainTo(long[] into, int maxElements) {
+        int max = Math.min(maxElements, into.length);
+        int n = 0;
+        while (n < max) {
+            long pos = head.get();
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    into[n++] = buffer[index];
+                    sequences.set(index, pos + capacity);
+                }
+            } else if (diff < 0) {
+                break;
+            }
+            // else: another consumer claimed this slot, reload head
+        }
+        // one wake-up for the whole batch
+        if (n > 0) {
+            signalProducers();
+        }
+        return n;
+    }
+
+    /**
+     * Waits until at least one value is available and then takes up to {@code maxElements}.
+     *
+     * @return the number of values written to the start of {@code into}, at least one
+     */
+    public int drainToBlocking(long[] into, int maxElements) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            int n = drainTo(into, maxElements);
+            if (n > 0) {
+                return n;
+            }
+            await(attempt, false);
+        }
+    }
+
+    /**
+     * Waits according to the wait strategy until the other side may have made progress.
+     */
+    private void await(int attempt, boolean producer) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        switch (waitStrategy) {
+            case SPINNING:
+                return;
+            case YIELDING:
+                if (attempt >= SPIN_TRIES) {
+                    Thread.yield();
+                }
+                return;
+            case BLOCKING:
+            default:
+                if (attempt < SPIN_TRIES / 10) {
+                    return;
+                }
+                if (producer) {
+                    awaitNotFull();
+                } else {
+                    awaitNotEmpty();
+                }
+        }
+    }
+
+    private void awaitNotEmpty() throws InterruptedException {
+        lock.lock();
+        waitingConsumers.incrementAndGet();
+        try {
+            // re-check after announcing ourselves, a producer that missed the announcement has published already
+            if (!slotReadable()) {
+                notEmpty.await();
+            }
+        } finally {
+            waitingConsumers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    private void awaitNotFull() throws InterruptedException {
+        lock.lock();
+        waitingProducers.incrementAndGet();
+        try {
+            if (!slotWritable()) {
+                notFull.await();
+            }
+        } finally {
+            waitingProducers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    private boolean slotReadable() {
+        long pos = head.get();
+        return sequences.get((int) pos & mask) - (pos + 1) >= 0;
+    }
+
+    private boolean slotWritable() {
+        long pos = tail.get();
+        return sequences.get((int) pos & mask) - pos >= 0;
+    }
+
+    private void signalConsumer() {
+        if (waitingConsumers.get() > 0) {
+            lock.lock();
+            try {
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void signalProducers() {
+        if (waitingProducers.get() > 0) {
+            lock.lock();
+            try {
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
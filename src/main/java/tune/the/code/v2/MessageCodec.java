@@ -0,0 +1,24 @@
+package tune.the.code.v2;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Turns messages into bytes and back, for queues that keep part of their backlog off the heap, see
+ * {@link SpillingQueue}.
+ *
+ * @since 18.10.2026
+ */
+public interface MessageCodec<T> {
+
+    /**
+     * Writes {@code message} from the position of {@code buffer} on.
+     *
+     * @throws java.nio.BufferOverflowException if it does not fit, the caller tries again with a larger buffer
+     */
+    void encode(T message, ByteBuffer buffer);
+
+    /**
+     * Reads a message written by {@link #encode(Object, ByteBuffer)} from the position of {@code buffer} on.
+     */
+    T decode(ByteBuffer buffer);
+}
@@ -1,10 +1,15 @@
 package tune.the.code.v2;
 
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author Sevket Goekay <goekay@dbis.rwth-aachen.de>
@@ -13,24 +18,289 @@ import java.util.concurrent.TimeUnit;
  */
 public class MessageQueue<T> {
 
+    /**
+     * The storage behind a {@link MessageQueue}.
+     */
+    public enum Type {
+        /**
+         * {@link LinkedBlockingQueue}, allocates a node per message. Unbounded with a capacity of
+         * {@link Integer#MAX_VALUE}.
+         */
+        LINKED,
+        /**
+         * Bounded, pre-allocated {@link RingBufferQueue}. Producers block once it is full.
+         */
+        RING_BUFFER,
+        /**
+         * {@link SpillingQueue}, keeps up to capacity messages on the heap and the rest on disk. Producers never
+         * block. Needs a codec, see {@link #createSpilling(int, MessageCodec, Path)}.
+         */
+        SPILLING
+    }
+
     private static final Map<Class<?>, MessageQueue<?>> queueMap = new ConcurrentHashMap<>();
 
-    @SuppressWarnings("unchecked")
     public static <T> MessageQueue<T> getInstance(Class<T> clazz) {
-        return (MessageQueue<T>) queueMap.computeIfAbsent(clazz, k -> new MessageQueue<T>(new LinkedBlockingQueue<>()));
+        return getInstance(clazz, Type.LINKED, Integer.MAX_VALUE, WaitStrategy.BLOCKING);
+    }
+
+    public static <T> MessageQueue<T> getInstance(Class<T> clazz, Type type, int capacity) {
+        return getInstance(clazz, type, capacity, WaitStrategy.BLOCKING);
+    }
+
+    /**
+     * The first call for a message type decides the implementation. Asking for the same type again with a
+     * different configuration while its queue is still open is an error, since producers and consumers would
+     * silently disagree. A closed queue is done for good, so the next call replaces it with a new one, in whatever
+     * configuration it asks for, and a batch can run again in the same process.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> MessageQueue<T> getInstance(Class<T> clazz, Type type, int capacity,
+                                                  WaitStrategy waitStrategy) {
+        MessageQueue<T> queue = (MessageQueue<T>) queueMap.compute(
+                clazz, (k, existing) -> existing == null || existing.isClosed()
+                                        ? new MessageQueue<T>(type, capacity, waitStrategy)
+                                        : existing);
+        if (queue.type != type || queue.capacity != capacity || queue.waitStrategy != waitStrategy) {
+            throw new IllegalStateException("MessageQueue for " + clazz.getName() + " already exists as "
+                                                    + queue.type + "(" + queue.capacity + ", "
+                                                    + queue.waitStrategy + ")");
+        }
+        return queue;
+    }
+
+    /**
+     * @return whether {@code queue} is the process-wide one of some message type, see {@link #getInstance(Class)}
+     */
+    public static boolean isRegistered(MessageQueue<?> queue) {
+        return queueMap.containsValue(queue);
+    }
+
+    /**
+     * Creates a queue that is not registered under any message type, e.g. for a pipeline that must not share its
+     * queue with others.
+     */
+    public static <T> MessageQueue<T> create(Type type, int capacity, WaitStrategy waitStrategy) {
+        return new MessageQueue<>(type, capacity, waitStrategy);
+    }
+
+    /**
+     * Creates an unregistered queue of type {@link Type#SPILLING}.
+     *
+     * @param highWaterMark messages kept on the heap, the rest goes to segment files in {@code directory}
+     */
+    public static <T> MessageQueue<T> createSpilling(int highWaterMark, MessageCodec<T> codec, Path directory) {
+        return createSpilling(highWaterMark, codec, directory, SpillingQueue.DEFAULT_SEGMENT_SIZE);
+    }
+
+    public static <T> MessageQueue<T> createSpilling(int highWaterMark, MessageCodec<T> codec, Path directory,
+                                                     int segmentSize) {
+        return new MessageQueue<>(Type.SPILLING, highWaterMark, WaitStrategy.BLOCKING,
+                                  new SpillingQueue<>(highWaterMark, new EndOfStreamCodec<>(codec), directory,
+                                                      segmentSize));
     }
 
+    private static final Object END_OF_STREAM = new Object();
+
     private final BlockingQueue<T> queue;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final Type type;
+    private final int capacity;
+    private final WaitStrategy waitStrategy;
 
-    private MessageQueue(BlockingQueue<T> queue) {
+    /**
+     * Travels through the queue after the last message. Never handed out, so the unchecked cast is safe.
+     */
+    @SuppressWarnings("unchecked")
+    private final T endOfStream = (T) END_OF_STREAM;
+
+    private MessageQueue(Type type, int capacity, WaitStrategy waitStrategy) {
+        this(type, capacity, waitStrategy, newQueue(type, capacity, waitStrategy));
+    }
+
+    private MessageQueue(Type type, int capacity, WaitStrategy waitStrategy, BlockingQueue<T> queue) {
+        this.type = type;
+        this.capacity = capacity;
+        this.waitStrategy = waitStrategy;
         this.queue = queue;
     }
 
+    private static <T> BlockingQueue<T> newQueue(Type type, int capacity, WaitStrategy waitStrategy) {
+        switch (type) {
+            case RING_BUFFER:
+                return new RingBufferQueue<>(capacity, waitStrategy);
+            case SPILLING:
+                throw new IllegalArgumentException("A spilling MessageQueue needs a codec, see createSpilling");
+            case LINKED:
+            default:
+                return new LinkedBlockingQueue<>(capacity);
+        }
+    }
+
+    /**
+     * Waits up to {@code waitForMs} for a message.
+     *
+     * @return null if the wait timed out or the queue is closed and drained
+     */
     public T pop(int waitForMs) throws InterruptedException {
-        return queue.poll(waitForMs, TimeUnit.MILLISECONDS);
+        return unlessEndOfStream(queue.poll(waitForMs, TimeUnit.MILLISECONDS));
     }
 
+    /**
+     * Waits for a message as long as it takes.
+     *
+     * @return null once the queue is closed and drained
+     */
+    public T pop() throws InterruptedException {
+        return unlessEndOfStream(queue.take());
+    }
+
+    /**
+     * Moves up to {@code maxElements} messages into {@code target} without waiting.
+     *
+     * @return the number of messages moved
+     */
+    public int drainTo(List<? super T> target, int maxElements) throws InterruptedException {
+        return Math.max(0, drain(target, maxElements));
+    }
+
+    /**
+     * Waits for the first message as long as it takes and then takes whatever else is already queued, up to
+     * {@code maxElements} in total. A consumer pays the lock hand-off and wake-up once per batch instead of once
+     * per message.
+     *
+     * @return the number of messages added to {@code target}, 0 once the queue is closed and drained
+     */
+    public int popBatch(List<? super T> target, int maxElements) throws InterruptedException {
+        int drained = drain(target, maxElements);
+        if (drained != 0) {
+            return Math.max(0, drained);
+        }
+        return addAndDrain(target, queue.take(), maxElements);
+    }
+
+    /**
+     * Like {@link #popBatch(List, int)}, but waits at most {@code waitForMs} for the first message.
+     *
+     * @return the number of messages added to {@code target}, 0 if the wait timed out or the queue is closed and
+     * drained
+     */
+    public int popBatch(List<? super T> target, int maxElements, int waitForMs) throws InterruptedException {
+        int drained = drain(target, maxElements);
+        if (drained != 0) {
+            return Math.max(0, drained);
+        }
+        T first = queue.poll(waitForMs, TimeUnit.MILLISECONDS);
+        return first == null ? 0 : addAndDrain(target, first, maxElements);
+    }
+
+    public List<T> popBatch(int maxElements, int waitForMs) throws InterruptedException {
+        List<T> batch = new ArrayList<>(Math.min(maxElements, 64));
+        popBatch(batch, maxElements, waitForMs);
+        return batch;
+    }
+
+    private int addAndDrain(List<? super T> target, T first, int maxElements) throws InterruptedException {
+        if (unlessEndOfStream(first) == null) {
+            return 0;
+        }
+        target.add(first);
+        return 1 + Math.max(0, drain(target, maxElements - 1));
+    }
+
+    /**
+     * The end-of-stream marker is the last element ever queued, so it can only show up at the end of a drain.
+     *
+     * @return the number of messages moved, -1 if the queue is closed and drained
+     */
+    private int drain(List<? super T> target, int maxElements) throws InterruptedException {
+        int drained = queue.drainTo(target, maxElements);
+        if (drained > 0 && target.get(target.size() - 1) == endOfStream) {
+            target.remove(target.size() - 1);
+            // leave it for the other consumers
+            queue.put(endOfStream);
+            return drained == 1 ? -1 : drained - 1;
+        }
+        return drained;
+    }
+
+    /**
+     * Puts the end-of-stream marker back, so every other consumer sees it as well.
+     */
+    private T unlessEndOfStream(T element) throws InterruptedException {
+        if (element == endOfStream) {
+            queue.put(endOfStream);
+            return null;
+        }
+        return element;
+    }
+
+    /**
+     * Blocks while a bounded queue is full.
+     *
+     * @throws IllegalStateException if the queue has been closed
+     */
     public void push(T obj) throws InterruptedException {
+        if (closed.get()) {
+            throw new IllegalStateException("MessageQueue has been closed");
+        }
         queue.put(obj);
     }
+
+    /**
+     * Signals that no more messages will be pushed. Consumers still get everything queued before, after that
+     * {@link #pop()} returns null and {@link #popBatch(List, int)} returns 0 without blocking. Must only be called
+     * once all producers are done. If it is interrupted before the end-of-stream marker is queued, the queue stays
+     * open and can be closed again.
+     */
+    public void close() throws InterruptedException {
+        if (closed.compareAndSet(false, true)) {
+            try {
+                queue.put(endOfStream);
+            } catch (InterruptedException e) {
+                closed.set(false);
+                throw e;
+            }
+        }
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * Number of queued messages, not counting the end-of-stream marker.
+     */
+    public int size() {
+        int size = queue.size();
+        return closed.get() && size > 0 ? size - 1 : size;
+    }
+
+    /**
+     * Lets the end-of-stream marker go to disk behind the last spilled message, one byte per message.
+     */
+    private static final class EndOfStreamCodec<T> implements MessageCodec<T> {
+
+        private final MessageCodec<T> codec;
+
+        private EndOfStreamCodec(MessageCodec<T> codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        public void encode(T message, ByteBuffer buffer) {
+            if (message == END_OF_STREAM) {
+                buffer.put((byte) 0);
+            } else {
+                buffer.put((byte) 1);
+                codec.encode(message, buffer);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T decode(ByteBuffer buffer) {
+            return buffer.get() == 0 ? (T) END_OF_STREAM : codec.decode(buffer);
+        }
+    }
 }
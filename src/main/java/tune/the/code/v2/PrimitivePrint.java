@@ -0,0 +1,119 @@
+package tune.the.code.v2;
+
+import config.Config;
+import datamodel.Bank;
+import datamodel.BankAccount;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link Print} for requests from a {@link PrintRequestChannel}. The workers decode every request against the
+ * {@link ContractStore} the producer encoded it with. They hand the print service a {@link BankAccount} that each
+ * worker reuses, so that printing allocates nothing per request. Print services must therefore not hold on to the
+ * account after the call returns, neither {@link PrintService#SYSTEM} nor {@link PrintService#DARK_SIDE} does.
+ *
+ * @since 18.10.2026
+ */
+public class PrimitivePrint extends AbstractPrint {
+
+    private final PrintRequestChannel channel;
+
+    public PrimitivePrint(boolean turnToTheDarkSide, PrintRequestChannel channel, ContractStore store) {
+        this(turnToTheDarkSide, channel, store, turnToTheDarkSide ? PrintService.DARK_SIDE : PrintService.SYSTEM);
+    }
+
+    public PrimitivePrint(boolean turnToTheDarkSide, PrintRequestChannel channel, ContractStore store,
+                          PrintService printService) {
+        this(turnToTheDarkSide, channel, store, printService,
+             turnToTheDarkSide ? Runtime.getRuntime().availableProcessors() : Config.PRINT_CAPABILITIES,
+             ExecutionBackend.best(), BatchMetrics.getDefault());
+    }
+
+    /**
+     * @param concurrency number of prints in flight, see {@link Print}
+     */
+    public PrimitivePrint(boolean turnToTheDarkSide, PrintRequestChannel channel, ContractStore store,
+                          PrintService printService, int concurrency, ExecutionBackend executionBackend,
+                          BatchMetrics metrics) {
+        super(turnToTheDarkSide, concurrency, executionBackend, metrics);
+        this.channel = channel;
+        metrics.registerGauge("print.queueDepth", channel::size);
+
+        for (int i = 0; i < concurrency; i++) {
+            addWorker(new PrintWorker(i, concurrency, channel, store, printCounter, printService, metrics,
+                                      this::workerFinished));
+        }
+    }
+
+    @Override
+    void closeInput() throws InterruptedException {
+        channel.close();
+    }
+
+    /**
+     * A channel is never the process-wide print queue, so the count stays with {@link #getPrintCount()}.
+     */
+    @Override
+    boolean speaksForPrintSystem() {
+        return false;
+    }
+
+    private static class PrintWorker extends Worker {
+
+        private final PrintRequestChannel channel;
+        private final ContractStore store;
+        private final LongAdder printCounter;
+        private final PrintService printService;
+        private final BatchMetrics metrics;
+
+        private final long[] batch = new long[Print.MAX_BATCH_SIZE];
+        private final BankAccount bankAccount = new BankAccount(0, 0, 0);
+
+        private PrintWorker(int id, int workerCount, PrintRequestChannel channel, ContractStore store,
+                            LongAdder printCounter, PrintService printService, BatchMetrics metrics,
+                            Runnable onFinished) {
+            super(id, workerCount, onFinished);
+            this.channel = channel;
+            this.store = store;
+            this.printCounter = printCounter;
+            this.printService = printService;
+            this.metrics = metrics;
+        }
+
+        @Override
+        void consume() throws InterruptedException {
+            int n;
+            while ((n = channel.popBatch(batch, nextBatchSize(channel.size()))) > 0) {
+                countBatch(n);
+                for (int i = 0; i < n; i++) {
+                    printInkassoConfirmation(PrintRequestChannel.contractIndex(batch[i]),
+                                             PrintRequestChannel.accountIndex(batch[i]));
+                }
+            }
+        }
+
+        private void printInkassoConfirmation(int contractIndex, int accountIndex) {
+            Bank bank = store.bankOfAccount(accountIndex);
+            bankAccount.setId(store.accountId(accountIndex));
+            bankAccount.setBankId(store.accountBankId(accountIndex));
+            bankAccount.setNumber(store.accountNumber(accountIndex));
+            String policyHolderName = store.policyHolderName(contractIndex);
+
+            long callStart = System.nanoTime();
+            metrics.printInFlight().increment();
+            boolean success;
+            try {
+                success = printService.doPrintInkassoConfirmation(bank.getName(), bankAccount, policyHolderName);
+            } finally {
+                metrics.printCall().recordSince(callStart);
+                metrics.printInFlight().decrement();
+            }
+            if (success) {
+                printCounter.increment();
+            } else {
+                System.err.println("Could not print confirmation for " + bank + ", " + bankAccount + ", "
+                                           + policyHolderName);
+            }
+        }
+    }
+}
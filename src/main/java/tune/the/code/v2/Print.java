@@ -1,132 +1,446 @@
 package tune.the.code.v2;
 
+import config.Config;
 import system.PrintSystem;
 
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @author Sevket Goekay <goekay@dbis.rwth-aachen.de>
  * @author Fabian Ohler <fabian.ohler1@rwth-aachen.de>
  * @since 27.11.2018
  */
-public class Print implements Runnable {
+public class Print extends AbstractPrint {
 
-    private static final int WAIT_ON_PRINT_QUEUE_MS = 1000;
-    private static final int QUEUE_CONSUMER_SIZE = Runtime.getRuntime().availableProcessors();
+    /**
+     * Printing is about 10x slower than inkasso. Bounding the queue throttles inkasso to the print rate instead of
+     * piling up the whole backlog on the heap.
+     */
+    public static final int PRINT_QUEUE_CAPACITY = 4096;
 
-    private final List<PrintWorker> queueConsumers = new ArrayList<>();
-    private final CountDownLatch latch = new CountDownLatch(QUEUE_CONSUMER_SIZE);
-    private final AtomicInteger printCounter = new AtomicInteger();
-    private final boolean turnToTheDarkSide;
+    static final int MAX_BATCH_SIZE = 64;
+
+    /**
+     * The process-wide print queue. Batches that run side by side need queues of their own, see
+     * {@link BatchPipeline}.
+     */
+    static MessageQueue<PrintInputData> getPrintQueue() {
+        return MessageQueue.getInstance(PrintInputData.class, MessageQueue.Type.RING_BUFFER, PRINT_QUEUE_CAPACITY);
+    }
+
+    private final MessageQueue<PrintInputData> messageQueue;
+    private final ResumeJournal journal;
+    private final RetryScheduler printRetries;
+    private final FingerprintIndex fingerprints;
+    // null without retries
+    private final RetryLane retryLane;
 
     public Print() {
         this(true);
     }
 
     public Print(boolean turnToTheDarkSide) {
-        this.turnToTheDarkSide = turnToTheDarkSide;
-        MessageQueue<PrintInputData> messageQueue = MessageQueue.getInstance(PrintInputData.class);
+        this(turnToTheDarkSide, getPrintQueue());
+    }
+
+    public Print(boolean turnToTheDarkSide, MessageQueue<PrintInputData> messageQueue) {
+        this(builder(turnToTheDarkSide).messageQueue(messageQueue));
+    }
+
+    private Print(Builder builder) {
+        // one more worker serves the retries while the others are on the queue
+        super(builder.turnToTheDarkSide, builder.concurrency() + (builder.printRetries == null ? 0 : 1),
+              builder.executionBackend(), builder.metrics());
+        this.journal = builder.journal;
+        this.printRetries = builder.printRetries;
+        this.fingerprints = builder.fingerprints;
+        this.retryLane = printRetries == null ? null : new RetryLane(printRetries, builder.concurrency());
+        this.messageQueue = builder.messageQueue != null ? builder.messageQueue : getPrintQueue();
+        metrics.registerGauge("print.queueDepth", messageQueue::size);
+        AdaptiveConcurrencyLimit printLimit = builder.printLimit;
+        if (printLimit != null) {
+            printLimit.registerGauges(metrics);
+        }
+        if (printRetries != null) {
+            printRetries.registerGauges(metrics);
+        }
+
+        PrintService printService = builder.printService();
+        int concurrency = builder.concurrency();
+        for (int i = 0; i < concurrency; i++) {
+            addWorker(new PrintWorker(i, concurrency, false, messageQueue, printCounter, printService, metrics,
+                                      journal, fingerprints, printLimit, retryLane, this::workerFinished));
+        }
+        if (retryLane != null) {
+            addWorker(new PrintWorker(concurrency, concurrency, true, messageQueue, printCounter, printService,
+                                      metrics, journal, fingerprints, printLimit, retryLane, this::workerFinished));
+        }
+    }
+
+    /**
+     * For everything beyond the mode and the queue. What is not set falls back to the same defaults as the
+     * constructors: the process-wide print queue, the system or the dark side, one worker per processor in dark mode
+     * and one per permit of the print system otherwise, the best execution backend and the default metrics.
+     */
+    public static Builder builder(boolean turnToTheDarkSide) {
+        return new Builder(turnToTheDarkSide);
+    }
+
+    public static final class Builder {
+
+        private final boolean turnToTheDarkSide;
+        private MessageQueue<PrintInputData> messageQueue;
+        private PrintService printService;
+        private int concurrency;
+        private ExecutionBackend executionBackend;
+        private BatchMetrics metrics;
+        private ResumeJournal journal;
+        private AdaptiveConcurrencyLimit printLimit;
+        private RetryScheduler printRetries;
+        private FingerprintIndex fingerprints;
+
+        private Builder(boolean turnToTheDarkSide) {
+            this.turnToTheDarkSide = turnToTheDarkSide;
+        }
+
+        public Builder messageQueue(MessageQueue<PrintInputData> messageQueue) {
+            this.messageQueue = messageQueue;
+            return this;
+        }
+
+        public Builder printService(PrintService printService) {
+            this.printService = printService;
+            return this;
+        }
+
+        /**
+         * @param concurrency number of prints in flight. The print system only admits
+         *                    {@link Config#PRINT_CAPABILITIES} callers, additional workers would just block on its
+         *                    semaphore.
+         */
+        public Builder concurrency(int concurrency) {
+            if (concurrency < 1) {
+                throw new IllegalArgumentException("concurrency must be positive");
+            }
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        public Builder executionBackend(ExecutionBackend executionBackend) {
+            this.executionBackend = executionBackend;
+            return this;
+        }
+
+        public Builder metrics(BatchMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @param journal marks every printed confirmation. It is completed or closed once printing has stopped, see
+         *                {@link #stop()}.
+         */
+        public Builder journal(ResumeJournal journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        /**
+         * @param printLimit learns how many prints the print system takes at once. The limit can not exceed the
+         *                   concurrency, so set {@link AdaptiveConcurrencyLimit#getMaxLimit()} there.
+         */
+        public Builder printLimit(AdaptiveConcurrencyLimit printLimit) {
+            this.printLimit = printLimit;
+            return this;
+        }
+
+        /**
+         * @param printRetries tries failed prints again later without holding on to a worker meanwhile. Without it a
+         *                     failed print is only logged. {@link #stop()} waits for the last retry.
+         */
+        public Builder printRetries(RetryScheduler printRetries) {
+            this.printRetries = printRetries;
+            return this;
+        }
+
+        /**
+         * @param fingerprints the index of a delta run, records every printed confirmation. Hand the same index to
+         *                     {@link InkassoBatch}. It is saved once printing has stopped, see {@link #stop()}.
+         */
+        public Builder fingerprints(FingerprintIndex fingerprints) {
+            this.fingerprints = fingerprints;
+            return this;
+        }
+
+        public Print build() {
+            return new Print(this);
+        }
+
+        private PrintService printService() {
+            if (printService != null) {
+                return printService;
+            }
+            return turnToTheDarkSide ? PrintService.DARK_SIDE : PrintService.SYSTEM;
+        }
+
+        private int concurrency() {
+            if (concurrency > 0) {
+                return concurrency;
+            }
+            return turnToTheDarkSide ? Runtime.getRuntime().availableProcessors() : Config.PRINT_CAPABILITIES;
+        }
+
+        private ExecutionBackend executionBackend() {
+            return executionBackend != null ? executionBackend : ExecutionBackend.best();
+        }
 
-        for (int i = 0; i < QUEUE_CONSUMER_SIZE; i++) {
-            queueConsumers.add(new PrintWorker(messageQueue, latch, printCounter, turnToTheDarkSide));
+        private BatchMetrics metrics() {
+            return metrics != null ? metrics : BatchMetrics.getDefault();
         }
     }
 
+    /**
+     * Signals the end of the input through the queue, so that the workers block on it without a timeout.
+     */
     @Override
-    public void run() {
-        queueConsumers.forEach(PrintWorker::start);
+    void closeInput() throws InterruptedException {
+        messageQueue.close();
     }
 
-    public void stop() {
-        queueConsumers.forEach(PrintWorker::stop);
+    @Override
+    boolean speaksForPrintSystem() {
+        return MessageQueue.isRegistered(messageQueue);
+    }
 
+    /**
+     * Waits for the retries as well. Completes the journal if the run got through, otherwise only closes it, so
+     * that the next run resumes this one. Saves the fingerprint index either way, it only holds what was printed.
+     */
+    @Override
+    void drained(boolean completed) {
+        if (printRetries != null) {
+            printRetries.printReport();
+        }
+        if (journal != null) {
+            if (completed) {
+                journal.complete();
+            } else {
+                journal.close();
+            }
+        }
+        if (fingerprints != null) {
+            try {
+                fingerprints.save();
+            } catch (IOException e) {
+                System.err.println("Could not save the fingerprint index: " + e.getLocalizedMessage());
+            }
+        }
+    }
+
+    /**
+     * Makes {@link PrintSystem#getPrintCount()} report the prints that bypassed it.
+     */
+    static void overridePrintCount(int printCount) {
         try {
-            latch.await();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            Field printCountField = PrintSystem.class.getDeclaredField("printCount");
+            printCountField.setAccessible(true);
+            printCountField.setInt(printCountField, printCount);
+        } catch (Exception e) {
+            // swallow
+        }
+    }
+
+    /**
+     * Hands the due retries to the print workers, apart from the message queue, which ends with its end-of-stream
+     * marker. One worker only serves the lane, so that a retry does not wait for the queue, the others join it once
+     * the queue is drained. All of them block on it without a timeout until it is ended, once the queue is drained
+     * and no retry is pending anymore.
+     */
+    private static final class RetryLane {
+
+        private static final PrintAttempt END = new PrintAttempt(null, 0);
+
+        private final RetryScheduler retries;
+        private final BlockingQueue<PrintAttempt> due = new LinkedBlockingQueue<>();
+        private final int queueWorkers;
+        private final AtomicInteger drainedQueueWorkers = new AtomicInteger();
+
+        private RetryLane(RetryScheduler retries, int queueWorkers) {
+            this.retries = retries;
+            this.queueWorkers = queueWorkers;
         }
 
-        if (turnToTheDarkSide) {
-            try {
-                Field printCountField = PrintSystem.class.getDeclaredField("printCount");
-                printCountField.setAccessible(true);
-                printCountField.setInt(printCountField, printCounter.get());
-            } catch (Exception e) {
-                // swallow
+        /**
+         * The lane is unbounded, it always has room.
+         */
+        private boolean offer(PrintInputData data, int attempt) {
+            return due.offer(new PrintAttempt(data, attempt));
+        }
+
+        /**
+         * @return null once the lane has ended
+         */
+        private PrintAttempt take() throws InterruptedException {
+            PrintAttempt attempt = due.take();
+            if (attempt == END) {
+                // leave it for the other workers
+                due.offer(END);
+                return null;
+            }
+            return attempt;
+        }
+
+        private void queueDrained() {
+            drainedQueueWorkers.incrementAndGet();
+            endIfDone();
+        }
+
+        /**
+         * Called after every retried attempt as well. A retry only becomes pending from the queue or from a retried
+         * attempt before it is done, so once the queue is drained and nothing is pending, nothing will be.
+         */
+        private void endIfDone() {
+            if (drainedQueueWorkers.get() == queueWorkers && retries.isIdle()) {
+                due.offer(END);
             }
         }
     }
 
-    private static class PrintWorker implements Runnable {
+    /**
+     * A print that failed before and is due again.
+     */
+    private static final class PrintAttempt {
+
+        private final PrintInputData data;
+        private final int attempt;
+
+        private PrintAttempt(PrintInputData data, int attempt) {
+            this.data = data;
+            this.attempt = attempt;
+        }
+    }
+
+    private static class PrintWorker extends Worker {
 
-        private final AtomicBoolean running = new AtomicBoolean(false);
         private final MessageQueue<PrintInputData> messageQueue;
-        private final CountDownLatch latch;
-        private final AtomicInteger printCounter;
-        private final boolean turnToTheDarkSide;
-        private final int waitOnPrintMillis;
+        private final LongAdder printCounter;
+        private final PrintService printService;
+        private final BatchMetrics metrics;
+        private final ResumeJournal journal;
+        private final FingerprintIndex fingerprints;
+        private final AdaptiveConcurrencyLimit printLimit;
+        private final RetryLane retryLane;
+        private final boolean retriesOnly;
 
-        private Thread worker;
+        private final List<PrintInputData> batch = new ArrayList<>(MAX_BATCH_SIZE);
 
-        private PrintWorker(MessageQueue<PrintInputData> messageQueue, CountDownLatch latch,
-                            AtomicInteger printCounter, boolean turnToTheDarkSide) {
+        /**
+         * @param retriesOnly serves the retry lane from the start instead of the queue
+         */
+        private PrintWorker(int id, int workerCount, boolean retriesOnly, MessageQueue<PrintInputData> messageQueue,
+                            LongAdder printCounter, PrintService printService, BatchMetrics metrics,
+                            ResumeJournal journal, FingerprintIndex fingerprints, AdaptiveConcurrencyLimit printLimit,
+                            RetryLane retryLane, Runnable onFinished) {
+            super(id, workerCount, onFinished);
             this.messageQueue = messageQueue;
-            this.latch = latch;
             this.printCounter = printCounter;
-            this.turnToTheDarkSide = turnToTheDarkSide;
-
-            if (turnToTheDarkSide) {
-                waitOnPrintMillis = 1;
-            } else {
-                waitOnPrintMillis = WAIT_ON_PRINT_QUEUE_MS;
-            }
+            this.printService = printService;
+            this.metrics = metrics;
+            this.journal = journal;
+            this.fingerprints = fingerprints;
+            this.printLimit = printLimit;
+            this.retryLane = retryLane;
+            this.retriesOnly = retriesOnly;
         }
 
-        private void start() {
-            worker = new Thread(this);
-            worker.start();
+        /**
+         * Blocks on the queue without a timeout until it is closed and drained, then on the retry lane until it
+         * ends.
+         */
+        @Override
+        void consume() throws InterruptedException {
+            if (!retriesOnly) {
+                consumeQueue();
+                if (retryLane == null) {
+                    return;
+                }
+                retryLane.queueDrained();
+            }
+            PrintAttempt retry;
+            while ((retry = retryLane.take()) != null) {
+                printInkassoConfirmation(retry.data, retry.attempt);
+                retryLane.endIfDone();
+            }
         }
 
-        private void stop() {
-            running.set(false);
+        private void consumeQueue() throws InterruptedException {
+            int taken;
+            while ((taken = messageQueue.popBatch(batch, nextBatchSize(messageQueue.size()))) != 0) {
+                countBatch(taken);
+                for (PrintInputData element : batch) {
+                    printInkassoConfirmation(element, 1);
+                }
+                batch.clear();
+            }
         }
 
-        @Override
-        public void run() {
-            running.set(true);
-            runningLoop:
-            while (running.get()) {
-                while (true) {
-                    final PrintInputData element;
-                    try {
-                        element = messageQueue.pop(waitOnPrintMillis);
-                    } catch (final InterruptedException e) {
-                        break runningLoop;
-                    }
-                    if (null == element) {
-                        continue runningLoop;
-                    }
-                    printInkassoConfirmation(element);
+        /**
+         * @param attempt 1 for the first call
+         */
+        private void printInkassoConfirmation(PrintInputData data, int attempt) throws InterruptedException {
+            if (attempt == 1 && retryLane != null) {
+                retryLane.retries.recordCall();
+            }
+            boolean success = false;
+            try {
+                success = print(data);
+                if (!success && retryLane != null) {
+                    retryLane.retries.retry(data.getContractId(), attempt, "print failed",
+                                            nextAttempt -> retryLane.offer(data, nextAttempt));
+                }
+            } finally {
+                // after the next retry is scheduled, so that the retries never look done in between
+                if (attempt > 1) {
+                    retryLane.retries.attemptDone(success);
                 }
             }
-            latch.countDown();
         }
 
-        private void printInkassoConfirmation(PrintInputData data) {
-            if (turnToTheDarkSide) {
-                System.out.println("Printed confirmation for contract holder '" + data.getContractPolicyHolderName() + "', account " + data.getBankAccount().getNumber() + " at " + data.getBank().getName());
-                printCounter.incrementAndGet();
-                return;
+        private boolean print(PrintInputData data) throws InterruptedException {
+            long limitedCallStart = printLimit == null ? 0 : printLimit.acquire();
+            long callStart = System.nanoTime();
+            metrics.queueResidence().record(callStart - data.getCreatedNanos());
+            metrics.printInFlight().increment();
+            boolean success;
+            try {
+                success = printService.doPrintInkassoConfirmation(data.getBank().getName(), data.getBankAccount(), data.getContractPolicyHolderName());
+            } finally {
+                metrics.printCall().recordSince(callStart);
+                metrics.printInFlight().decrement();
+                if (printLimit != null) {
+                    printLimit.release(limitedCallStart);
+                }
             }
-            boolean success = PrintSystem.doPrintInkassoConfirmation(data.getBank().getName(), data.getBankAccount(), data.getContractPolicyHolderName());
-            if (!success) {
+            if (success) {
+                printCounter.increment();
+                metrics.endToEnd().recordSince(data.getSubmittedNanos());
+                if (journal != null && data.getContractId() != PrintInputData.NO_CONTRACT_ID) {
+                    journal.markPrinted(data.getContractId());
+                }
+                if (fingerprints != null && data.getFingerprintSlot() != PrintInputData.NO_FINGERPRINT_SLOT) {
+                    fingerprints.recordPrinted(data.getFingerprintSlot());
+                }
+            } else {
                 System.err.println("Could not print confirmation for " + data.getBank().toString() + ", " + data.getBankAccount() + ", " + data.getContractPolicyHolderName());
             }
+            return success;
         }
     }
 }
@@ -11,20 +11,82 @@ import datamodel.Contract;
  */
 public class PrintInputData {
 
+    /**
+     * Contract id of requests that were created without one.
+     */
+    public static final int NO_CONTRACT_ID = -1;
+    /**
+     * Fingerprint slot of requests that are not part of a delta run.
+     */
+    public static final int NO_FINGERPRINT_SLOT = -1;
+
     private final Bank bank;
     private final BankAccount bankAccount;
     private final String contractPolicyHolderName;
+    private final int contractId;
+    private final int fingerprintSlot;
+    private final long submittedNanos;
+    private final long createdNanos;
 
     public PrintInputData(Contract contract, Bank bank, BankAccount bankAccount) {
+        this(contract.getId(), contract.getPolicyHolderName(), bank, bankAccount);
+    }
+
+    public PrintInputData(String contractPolicyHolderName, Bank bank, BankAccount bankAccount) {
+        this(NO_CONTRACT_ID, contractPolicyHolderName, bank, bankAccount);
+    }
+
+    public PrintInputData(int contractId, String contractPolicyHolderName, Bank bank, BankAccount bankAccount) {
+        this(contractId, contractPolicyHolderName, bank, bankAccount, NO_FINGERPRINT_SLOT);
+    }
+
+    /**
+     * @param fingerprintSlot position of the contract in the {@link FingerprintIndex} of a delta run, which records
+     *                        it once the confirmation is printed
+     */
+    public PrintInputData(int contractId, String contractPolicyHolderName, Bank bank, BankAccount bankAccount,
+                          int fingerprintSlot) {
+        this(contractId, contractPolicyHolderName, bank, bankAccount, fingerprintSlot, System.nanoTime());
+    }
+
+    /**
+     * @param submittedNanos when the contract entered the batch, before its inkasso
+     */
+    PrintInputData(int contractId, String contractPolicyHolderName, Bank bank, BankAccount bankAccount,
+                   int fingerprintSlot, long submittedNanos) {
+        this(contractId, contractPolicyHolderName, bank, bankAccount, fingerprintSlot, submittedNanos,
+             Math.max(submittedNanos, System.nanoTime()));
+    }
+
+    /**
+     * Recreates a request that was created at {@code createdNanos}, e.g. when reading it back from disk.
+     */
+    PrintInputData(int contractId, String contractPolicyHolderName, Bank bank, BankAccount bankAccount,
+                   int fingerprintSlot, long submittedNanos, long createdNanos) {
+        this.contractId = contractId;
+        this.fingerprintSlot = fingerprintSlot;
         this.bank = bank;
         this.bankAccount = bankAccount;
-        this.contractPolicyHolderName = contract.getPolicyHolderName();
+        this.contractPolicyHolderName = contractPolicyHolderName;
+        this.submittedNanos = submittedNanos;
+        this.createdNanos = createdNanos;
     }
 
     public String getContractPolicyHolderName() {
         return contractPolicyHolderName;
     }
 
+    public int getContractId() {
+        return contractId;
+    }
+
+    /**
+     * @return {@link #NO_FINGERPRINT_SLOT} unless the request is part of a delta run
+     */
+    public int getFingerprintSlot() {
+        return fingerprintSlot;
+    }
+
     public Bank getBank() {
         return bank;
     }
@@ -33,4 +95,19 @@ public class PrintInputData {
         return bankAccount;
     }
 
+    /**
+     * @return {@link System#nanoTime()} when the contract entered the batch, the creation time unless the batch
+     * passed it on
+     */
+    public long getSubmittedNanos() {
+        return submittedNanos;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} at creation, i.e. right before the request is queued
+     */
+    public long getCreatedNanos() {
+        return createdNanos;
+    }
+
 }
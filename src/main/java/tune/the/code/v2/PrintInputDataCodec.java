@@ -0,0 +1,74 @@
+package tune.the.code.v2;
+
+import datamodel.Bank;
+import datamodel.BankAccount;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes a print request as its contract id, fingerprint slot, submission and creation time, policy holder name,
+ * bank and bank account. Strings are stored as length and UTF-8 bytes, a length of -1 stands for null. A request
+ * read back keeps the times of the original, so that the time it spent on disk counts as queue residence.
+ *
+ * @since 18.10.2026
+ */
+public final class PrintInputDataCodec implements MessageCodec<PrintInputData> {
+
+    public static final PrintInputDataCodec INSTANCE = new PrintInputDataCodec();
+
+    private PrintInputDataCodec() {
+    }
+
+    @Override
+    public void encode(PrintInputData message, ByteBuffer buffer) {
+        buffer.putInt(message.getContractId());
+        buffer.putInt(message.getFingerprintSlot());
+        buffer.putLong(message.getSubmittedNanos());
+        buffer.putLong(message.getCreatedNanos());
+        putString(buffer, message.getContractPolicyHolderName());
+        Bank bank = message.getBank();
+        buffer.put((byte) (bank == null ? 0 : 1));
+        if (bank != null) {
+            buffer.putInt(bank.getId());
+            putString(buffer, bank.getName());
+        }
+        BankAccount bankAccount = message.getBankAccount();
+        buffer.putInt(bankAccount.getId());
+        buffer.putInt(bankAccount.getBankId());
+        buffer.putInt(bankAccount.getNumber());
+    }
+
+    @Override
+    public PrintInputData decode(ByteBuffer buffer) {
+        int contractId = buffer.getInt();
+        int fingerprintSlot = buffer.getInt();
+        long submittedNanos = buffer.getLong();
+        long createdNanos = buffer.getLong();
+        String policyHolderName = getString(buffer);
+        Bank bank = buffer.get() == 0 ? null : new Bank(buffer.getInt(), getString(buffer));
+        BankAccount bankAccount = new BankAccount(buffer.getInt(), buffer.getInt(), buffer.getInt());
+        return new PrintInputData(contractId, policyHolderName, bank, bankAccount, fingerprintSlot, submittedNanos,
+                                  createdNanos);
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,107 @@
+package tune.the.code.v2;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Print requests as primitives: contract index and account index of a {@link ContractStore} packed into one
+ * {@code long} on a {@link LongRingBuffer}. In contrast to a {@link MessageQueue} of {@link PrintInputData}, a request
+ * costs no allocation on either side, the consumer looks the rest up in the same store.
+ * <p>
+ * Like {@link MessageQueue}, the channel is closed with an end-of-stream marker behind the last request, so that
+ * consumers can block without a timeout.
+ *
+ * @since 18.10.2026
+ */
+public class PrintRequestChannel {
+
+    /**
+     * Both indexes are non-negative, so a packed request never has the sign bit set.
+     */
+    private static final long END_OF_STREAM = -1L;
+
+    private final LongRingBuffer buffer;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    public PrintRequestChannel(int capacity) {
+        this(capacity, WaitStrategy.BLOCKING);
+    }
+
+    /**
+     * @param waitStrategy how producers wait while the channel is full and consumers while it is empty
+     */
+    public PrintRequestChannel(int capacity, WaitStrategy waitStrategy) {
+        this.buffer = new LongRingBuffer(capacity, waitStrategy);
+    }
+
+    public static long encode(int contractIndex, int accountIndex) {
+        return ((long) contractIndex << 32) | (accountIndex & 0xFFFF_FFFFL);
+    }
+
+    public static int contractIndex(long request) {
+        return (int) (request >>> 32);
+    }
+
+    public static int accountIndex(long request) {
+        return (int) request;
+    }
+
+    /**
+     * Blocks while the channel is full.
+     *
+     * @throws IllegalStateException if the channel has been closed already
+     */
+    public void push(int contractIndex, int accountIndex) throws InterruptedException {
+        if (contractIndex < 0 || accountIndex < 0) {
+            throw new IllegalArgumentException("Indexes must not be negative: " + contractIndex + ", "
+                                                       + accountIndex);
+        }
+        if (closed.get()) {
+            throw new IllegalStateException("PrintRequestChannel is closed");
+        }
+        buffer.put(encode(contractIndex, accountIndex));
+    }
+
+    /**
+     * Marks the end of the requests. Must only be called once all producers are done, closing again does nothing.
+     * If it is interrupted before the end is marked, the channel stays open and can be closed again.
+     */
+    public void close() throws InterruptedException {
+        if (closed.compareAndSet(false, true)) {
+            try {
+                buffer.put(END_OF_STREAM);
+            } catch (InterruptedException e) {
+                closed.set(false);
+                throw e;
+            }
+        }
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * @return number of pending requests, not counting the end-of-stream marker
+     */
+    public int size() {
+        int size = buffer.size();
+        return closed.get() ? Math.max(0, size - 1) : size;
+    }
+
+    /**
+     * Waits until at least one request is available and takes up to {@code maxElements}.
+     *
+     * @return the number of requests written to the start of {@code into}, 0 once the channel is closed and drained
+     */
+    public int popBatch(long[] into, int maxElements) throws InterruptedException {
+        int n = buffer.drainToBlocking(into, maxElements);
+        for (int i = 0; i < n; i++) {
+            if (into[i] == END_OF_STREAM) {
+                // nothing follows the marker, put it back for the other consumers
+                buffer.put(END_OF_STREAM);
+                return i;
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,46 @@
+package tune.the.code.v2;
+
+import datamodel.BankAccount;
+import system.PrintSystem;
+
+/**
+ * The downstream print system as seen by {@link Print}. Lets benchmarks and simulations replace the static
+ * {@link PrintSystem} with an in-process fake.
+ *
+ * @since 18.10.2026
+ */
+@FunctionalInterface
+public interface PrintService {
+
+    PrintService SYSTEM = PrintSystem::doPrintInkassoConfirmation;
+
+    /**
+     * Does not call the print system at all, only logs what it would have done.
+     */
+    PrintService DARK_SIDE = (bankName, bankAccount, policyHolderName) -> {
+        LogSink.getDefault().logConfirmation(policyHolderName, bankAccount.getNumber(), bankName);
+        return true;
+    };
+
+    boolean doPrintInkassoConfirmation(String bankName, BankAccount bankAccount, String policyHolderName);
+
+    /**
+     * Only calls {@code service} once {@code tenant} got one of the permits it shares with other batches. A call
+     * interrupted while waiting for the permit fails.
+     */
+    static PrintService sharing(PrintService service, FairShareScheduler.Tenant tenant) {
+        return (bankName, bankAccount, policyHolderName) -> {
+            try {
+                tenant.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            try {
+                return service.doPrintInkassoConfirmation(bankName, bankAccount, policyHolderName);
+            } finally {
+                tenant.release();
+            }
+        };
+    }
+}
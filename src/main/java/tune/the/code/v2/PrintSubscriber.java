@@ -0,0 +1,158 @@
+package tune.the.code.v2;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The print stage of a {@link ReactiveBatch}. Asks for {@code prefetch} requests up front and for one more per
+ * request a worker takes, the same way as {@link InkassoProcessor}. The workers block on the requests until the
+ * end-of-stream marker that completion or an error puts behind the last one. An error completes
+ * {@link #getCompletion()} exceptionally once the requests received before it are printed.
+ *
+ * @since 18.10.2026
+ */
+public class PrintSubscriber implements Flow.Subscriber<PrintInputData> {
+
+    private static final PrintInputData END_OF_STREAM = new PrintInputData(PrintInputData.NO_CONTRACT_ID, null, null,
+                                                                           null);
+
+    private final PrintService printService;
+    private final int concurrency;
+    private final int prefetch;
+    private final ExecutionBackend executionBackend;
+    private final BatchMetrics metrics;
+
+    private final BlockingQueue<PrintInputData> inbound;
+    private final AtomicInteger consumedSinceRequest = new AtomicInteger();
+    private final AtomicInteger runningWorkers;
+    private final LongAdder printCounter = new LongAdder();
+    private final CompletableFuture<Integer> completion = new CompletableFuture<>();
+
+    private volatile Flow.Subscription upstream;
+    private volatile Throwable upstreamFailure;
+
+    /**
+     * @param concurrency number of prints in flight, see {@link Print}
+     */
+    public PrintSubscriber(PrintService printService, int concurrency, int prefetch,
+                           ExecutionBackend executionBackend, BatchMetrics metrics) {
+        if (concurrency < 1 || prefetch < 1) {
+            throw new IllegalArgumentException("concurrency and prefetch must be positive");
+        }
+        this.printService = printService;
+        this.concurrency = concurrency;
+        this.prefetch = prefetch;
+        this.executionBackend = executionBackend;
+        this.metrics = metrics;
+        // room for the end-of-stream marker on top of what was requested
+        this.inbound = new ArrayBlockingQueue<>(prefetch + 1);
+        this.runningWorkers = new AtomicInteger(concurrency);
+        metrics.registerGauge("print.flowInbound", inbound::size);
+    }
+
+    /**
+     * Completes with the number of successful prints once upstream completed and everything was printed, or
+     * exceptionally with the error of upstream.
+     */
+    public CompletableFuture<Integer> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * @return successful prints so far, may be read while printing is in progress
+     */
+    public int getPrintCount() {
+        return printCounter.intValue();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        upstream = subscription;
+        for (int i = 0; i < concurrency; i++) {
+            executionBackend.start("print-flow-" + i, this::work);
+        }
+        subscription.request(prefetch);
+    }
+
+    @Override
+    public void onNext(PrintInputData item) {
+        if (!inbound.offer(item)) {
+            System.err.println("Print stage got more requests than it asked for, dropping contract "
+                                       + item.getContractId());
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        System.err.println("Inkasso stage failed: " + throwable);
+        upstreamFailure = throwable;
+        inbound.offer(END_OF_STREAM);
+    }
+
+    /**
+     * Upstream only sends what was requested and signals the end once, so there is always room for the marker.
+     */
+    @Override
+    public void onComplete() {
+        inbound.offer(END_OF_STREAM);
+    }
+
+    private void work() {
+        try {
+            while (true) {
+                PrintInputData request = inbound.take();
+                if (request == END_OF_STREAM) {
+                    // put back for the other workers
+                    inbound.put(END_OF_STREAM);
+                    break;
+                }
+                requestMore();
+                print(request);
+            }
+        } catch (InterruptedException e) {
+            System.err.println("Print worker was interrupted");
+            Thread.currentThread().interrupt();
+        } finally {
+            if (runningWorkers.decrementAndGet() == 0) {
+                Throwable failure = upstreamFailure;
+                if (failure == null) {
+                    completion.complete(printCounter.intValue());
+                } else {
+                    completion.completeExceptionally(failure);
+                }
+            }
+        }
+    }
+
+    private void requestMore() {
+        int batch = Math.max(1, prefetch / 2);
+        if (consumedSinceRequest.incrementAndGet() == batch) {
+            consumedSinceRequest.addAndGet(-batch);
+            upstream.request(batch);
+        }
+    }
+
+    private void print(PrintInputData request) {
+        long callStart = System.nanoTime();
+        metrics.queueResidence().record(callStart - request.getCreatedNanos());
+        metrics.printInFlight().increment();
+        boolean success;
+        try {
+            success = printService.doPrintInkassoConfirmation(request.getBank().getName(), request.getBankAccount(),
+                                                              request.getContractPolicyHolderName());
+        } finally {
+            metrics.printCall().recordSince(callStart);
+            metrics.printInFlight().decrement();
+        }
+        if (success) {
+            printCounter.increment();
+            metrics.endToEnd().recordSince(request.getSubmittedNanos());
+        } else {
+            System.err.println("Could not print confirmation for " + request.getBank() + ", "
+                                       + request.getBankAccount() + ", " + request.getContractPolicyHolderName());
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package tune.the.code.v2;
+
+import datamodel.Bank;
+import datamodel.BankAccount;
+import datamodel.Contract;
+import dataprovider.BankAccountProvider;
+import dataprovider.BankProvider;
+import dataprovider.ContractProvider;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Read-through cache in front of one of the data providers, whose accessors all sleep to simulate latency.
+ * <p>
+ * {@link #warmUp()} pays for one bulk call and fills the cache with the first {@code maximumSize} values of its
+ * result. Afterwards {@link #get(int)} answers from memory, falls back to the provider's by-id accessor on a miss
+ * and remembers ids the provider does not know (negative caching). The cache holds at most {@code maximumSize} ids,
+ * the oldest entries are evicted first, and nothing else of the provider data is kept.
+ * Concurrent misses on the same id may both go to the provider, which is harmless for read-only data.
+ *
+ * @since 18.10.2026
+ */
+public class ProviderCache<V> {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 1 << 20;
+
+    private static final Object MISSING = new Object();
+
+    private final String name;
+    private final Supplier<? extends Collection<V>> bulkLoader;
+    private final IntFunction<V> loader;
+    private final ToIntFunction<V> idOf;
+    private final int maximumSize;
+
+    private final Map<Integer, Object> entries = new ConcurrentHashMap<>();
+    private final Queue<Integer> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+
+    public ProviderCache(String name, Supplier<? extends Collection<V>> bulkLoader, IntFunction<V> loader,
+                         ToIntFunction<V> idOf, int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        this.name = name;
+        this.bulkLoader = bulkLoader;
+        this.loader = loader;
+        this.idOf = idOf;
+        this.maximumSize = maximumSize;
+    }
+
+    public static ProviderCache<Bank> forBanks() {
+        return new ProviderCache<>("banks", BankProvider::getBanks, BankProvider::getBankById, Bank::getId,
+                                   DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public static ProviderCache<BankAccount> forBankAccounts() {
+        return new ProviderCache<>("accounts", BankAccountProvider::getAccounts,
+                                   BankAccountProvider::getBankAccountById, BankAccount::getId,
+                                   DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public static ProviderCache<Contract> forContracts() {
+        return new ProviderCache<>("contracts", ContractProvider::getContracts, ContractProvider::getContractById,
+                                   Contract::getId, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Loads everything with a single bulk call. Only the first {@code maximumSize} elements are kept in the cache,
+     * but all of them are returned, so a caller that has to iterate the whole data set does not pay twice. The
+     * cache does not hold on to the list, every call makes a bulk call of its own.
+     */
+    public List<V> warmUp() {
+        long start = System.nanoTime();
+        List<V> all = Collections.unmodifiableList(new ArrayList<>(bulkLoader.get()));
+        loadNanos.add(System.nanoTime() - start);
+
+        for (V value : all) {
+            if (entries.size() >= maximumSize) {
+                break;
+            }
+            put(idOf.applyAsInt(value), value);
+        }
+        return all;
+    }
+
+    /**
+     * @return the cached value, or the provider's answer on a miss. Null if the provider does not know the id.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int id) {
+        Object cached = entries.get(id);
+        if (cached == MISSING) {
+            negativeHits.increment();
+            return null;
+        } else if (cached != null) {
+            hits.increment();
+            return (V) cached;
+        }
+
+        misses.increment();
+        long start = System.nanoTime();
+        V loaded = loader.apply(id);
+        loadNanos.add(System.nanoTime() - start);
+        put(id, loaded == null ? MISSING : loaded);
+        return loaded;
+    }
+
+    private void put(int id, Object value) {
+        if (entries.put(id, value) == null) {
+            insertionOrder.add(id);
+            while (entries.size() > maximumSize) {
+                Integer oldest = insertionOrder.poll();
+                if (oldest == null) {
+                    break;
+                }
+                if (entries.remove(oldest) != null) {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getNegativeHitCount() {
+        return negativeHits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getLoadTime(TimeUnit unit) {
+        return unit.convert(loadNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    public String getStatistics() {
+        return String.format("%s cache: %d entries, %d hits, %d negative hits, %d misses, %d evictions, "
+                                     + "%d ms loading", name, size(), getHitCount(), getNegativeHitCount(),
+                             getMissCount(), getEvictionCount(), getLoadTime(TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,47 @@
+package tune.the.code.v2;
+
+import datamodel.Bank;
+import datamodel.BankAccount;
+import datamodel.Contract;
+
+/**
+ * The caches for all three data providers. Handing the same instance to several batches, or keeping it across runs,
+ * pays each provider's bulk load only once.
+ *
+ * @since 18.10.2026
+ */
+public class ProviderCaches {
+
+    private final ProviderCache<Bank> banks;
+    private final ProviderCache<BankAccount> bankAccounts;
+    private final ProviderCache<Contract> contracts;
+
+    public ProviderCaches() {
+        this(ProviderCache.forBanks(), ProviderCache.forBankAccounts(), ProviderCache.forContracts());
+    }
+
+    public ProviderCaches(ProviderCache<Bank> banks, ProviderCache<BankAccount> bankAccounts,
+                          ProviderCache<Contract> contracts) {
+        this.banks = banks;
+        this.bankAccounts = bankAccounts;
+        this.contracts = contracts;
+    }
+
+    public ProviderCache<Bank> getBanks() {
+        return banks;
+    }
+
+    public ProviderCache<BankAccount> getBankAccounts() {
+        return bankAccounts;
+    }
+
+    public ProviderCache<Contract> getContracts() {
+        return contracts;
+    }
+
+    public void printStatistics() {
+        System.out.println(banks.getStatistics());
+        System.out.println(bankAccounts.getStatistics());
+        System.out.println(contracts.getStatistics());
+    }
+}
@@ -0,0 +1,85 @@
+package tune.the.code.v2;
+
+import datamodel.Bank;
+import datamodel.BankAccount;
+import datamodel.Contract;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Loads all three providers concurrently instead of one after another. Each data set is published as soon as its
+ * bulk load returns, so a consumer only waits for what it actually needs next.
+ *
+ * @since 18.10.2026
+ */
+public class ProviderPrefetch {
+
+    private final CompletableFuture<List<Bank>> banks;
+    private final CompletableFuture<List<BankAccount>> bankAccounts;
+    private final CompletableFuture<List<Contract>> contracts;
+
+    private ProviderPrefetch(ProviderCaches providerCaches, LatencyHistogram loadTimes) {
+        ExecutorService executor =
+                Executors.newFixedThreadPool(3, new InkassoScheduler.WorkerThreadFactory("provider-prefetch-"));
+        try {
+            // contracts take longest, start them first
+            contracts = CompletableFuture.supplyAsync(timed(providerCaches.getContracts(), loadTimes), executor);
+            bankAccounts = CompletableFuture.supplyAsync(timed(providerCaches.getBankAccounts(), loadTimes), executor);
+            banks = CompletableFuture.supplyAsync(timed(providerCaches.getBanks(), loadTimes), executor);
+        } finally {
+            // already submitted loads still run to completion
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Starts loading right away and returns without waiting.
+     */
+    public static ProviderPrefetch start(ProviderCaches providerCaches) {
+        return start(providerCaches, new LatencyHistogram("provider.load"));
+    }
+
+    /**
+     * @param loadTimes records the duration of each bulk load
+     */
+    public static ProviderPrefetch start(ProviderCaches providerCaches, LatencyHistogram loadTimes) {
+        return new ProviderPrefetch(providerCaches, loadTimes);
+    }
+
+    private static <V> Supplier<List<V>> timed(ProviderCache<V> cache, LatencyHistogram loadTimes) {
+        return () -> {
+            long start = System.nanoTime();
+            List<V> values = cache.warmUp();
+            loadTimes.recordSince(start);
+            return values;
+        };
+    }
+
+    public List<Bank> awaitBanks() {
+        return banks.join();
+    }
+
+    public List<BankAccount> awaitBankAccounts() {
+        return bankAccounts.join();
+    }
+
+    public List<Contract> awaitContracts() {
+        return contracts.join();
+    }
+
+    public CompletableFuture<List<Bank>> getBanks() {
+        return banks;
+    }
+
+    public CompletableFuture<List<BankAccount>> getBankAccounts() {
+        return bankAccounts;
+    }
+
+    public CompletableFuture<List<Contract>> getContracts() {
+        return contracts;
+    }
+}
@@ -0,0 +1,273 @@
+package tune.the.code.v2;
+
+import config.GeneratorConfig;
+import datamodel.Bank;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of a {@link ContractStore}: the provider data together with the resolved contract -> account ->
+ * bank join and the id indexes. A later run maps the file and copies the columns straight into the store's arrays,
+ * without asking the providers, without boxing and without rehashing.
+ * <p>
+ * A snapshot is only used if its format version and its generation match and the checksum over the payload is
+ * right. The generation identifies the data the snapshot was taken from, see {@link #generationOf(GeneratorConfig)}.
+ * Otherwise {@link #loadOrBuild(Path, long, ProviderCaches)} falls back to the providers and replaces the snapshot.
+ * <p>
+ * Layout, little-endian: a header of magic, version, generation, payload checksum (CRC32), payload length and the
+ * number of contracts, accounts, banks and names, followed by the payload: the eight int columns, the three index
+ * tables, the banks and the name dictionary. Strings are stored as length and UTF-8 bytes.
+ *
+ * @since 18.10.2026
+ */
+public final class ProviderSnapshot {
+
+    /**
+     * System property with the snapshot file of the snapshot engines.
+     */
+    public static final String PATH_PROPERTY = "provider.snapshot";
+    /**
+     * System property with the generation of the data set, see {@link #generationOf(GeneratorConfig)}.
+     */
+    public static final String GENERATION_PROPERTY = "provider.snapshot.generation";
+
+    private static final int MAGIC = 0x50534E50; // "PSNP"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 48;
+
+    private ProviderSnapshot() {
+    }
+
+    /**
+     * The providers generate their data from a fixed seed, so the generator configuration identifies a data set.
+     */
+    public static long generationOf(GeneratorConfig config) {
+        long generation = config.contractCount;
+        generation = generation * 31 + config.accountCount;
+        generation = generation * 31 + config.bankCount;
+        generation = generation * 31 + Double.doubleToLongBits(config.withAccountRatio);
+        return generation;
+    }
+
+    /**
+     * Uses the snapshot if it is valid for the generation, otherwise builds the store from the providers and
+     * writes a new snapshot for the next run.
+     */
+    public static ContractStore loadOrBuild(Path file, long generation, ProviderCaches providerCaches) {
+        long start = System.nanoTime();
+        ContractStore store = load(file, generation);
+        if (store != null) {
+            System.out.printf("Loaded provider snapshot %s in %d ms%n", file,
+                              (System.nanoTime() - start) / 1_000_000);
+            return store;
+        }
+        store = ContractStore.build(providerCaches);
+        try {
+            write(store, file, generation);
+        } catch (IOException e) {
+            System.err.println("Could not write provider snapshot " + file + ": " + e.getLocalizedMessage());
+        }
+        System.out.printf("Built provider snapshot %s in %d ms%n", file, (System.nanoTime() - start) / 1_000_000);
+        return store;
+    }
+
+    /**
+     * @return null if there is no snapshot, or it was taken from other data, by another format version, or is
+     * damaged
+     */
+    public static ContractStore load(Path file, long generation) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return reject(file, "truncated");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                return reject(file, "unknown format");
+            }
+            if (buffer.getLong(8) != generation) {
+                return reject(file, "stale generation");
+            }
+            long checksum = buffer.getLong(16);
+            long payloadLength = buffer.getLong(24);
+            if (payloadLength != channel.size() - HEADER_BYTES) {
+                return reject(file, "truncated");
+            }
+            ByteBuffer payload = slice(buffer, HEADER_BYTES, (int) payloadLength);
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if (crc.getValue() != checksum) {
+                return reject(file, "checksum mismatch");
+            }
+            return read(payload, buffer.getInt(32), buffer.getInt(36), buffer.getInt(40), buffer.getInt(44));
+        } catch (IOException | RuntimeException e) {
+            return reject(file, e.toString());
+        }
+    }
+
+    private static ContractStore reject(Path file, String reason) {
+        System.out.println("Ignoring provider snapshot " + file + ": " + reason);
+        return null;
+    }
+
+    private static ContractStore read(ByteBuffer payload, int contractCount, int accountCount, int bankCount,
+                                      int nameCount) {
+        int[] contractIds = readInts(payload, contractCount);
+        int[] contractAccountIds = readInts(payload, contractCount);
+        int[] contractAccountIndexes = readInts(payload, contractCount);
+        int[] contractNameCodes = readInts(payload, contractCount);
+        int[] accountIds = readInts(payload, accountCount);
+        int[] accountBankIds = readInts(payload, accountCount);
+        int[] accountNumbers = readInts(payload, accountCount);
+        int[] accountBankIndexes = readInts(payload, accountCount);
+        IntIndexMap contractIndex = readIndexMap(payload);
+        IntIndexMap accountIndex = readIndexMap(payload);
+        IntIndexMap bankIndex = readIndexMap(payload);
+        Bank[] banks = new Bank[bankCount];
+        for (int b = 0; b < bankCount; b++) {
+            banks[b] = new Bank(payload.getInt(), readString(payload));
+        }
+        String[] names = new String[nameCount];
+        for (int n = 0; n < nameCount; n++) {
+            names[n] = readString(payload);
+        }
+        return new ContractStore(contractIds, contractAccountIds, contractAccountIndexes, contractNameCodes, names,
+                                 accountIds, accountBankIds, accountNumbers, accountBankIndexes, banks,
+                                 contractIndex, accountIndex, bankIndex);
+    }
+
+    /**
+     * Bulk copy out of the mapping. Little-endian is the native byte order on x86, so this is a plain memory copy.
+     */
+    private static int[] readInts(ByteBuffer payload, int count) {
+        int[] values = new int[count];
+        payload.asIntBuffer().get(values);
+        payload.position(payload.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    private static IntIndexMap readIndexMap(ByteBuffer payload) {
+        int size = payload.getInt();
+        int tableLength = payload.getInt();
+        return new IntIndexMap(readInts(payload, tableLength), readInts(payload, tableLength), size);
+    }
+
+    private static String readString(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.getInt()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes to a temporary file next to the snapshot and moves it into place, so a crash while writing never
+     * leaves a half-written snapshot behind.
+     */
+    public static void write(ContractStore store, Path file, long generation) throws IOException {
+        byte[][] bankNames = new byte[store.bankCount()][];
+        for (int b = 0; b < bankNames.length; b++) {
+            bankNames[b] = store.bank(b).getName().getBytes(StandardCharsets.UTF_8);
+        }
+        byte[][] names = new byte[store.nameCount()][];
+        for (int n = 0; n < names.length; n++) {
+            names[n] = store.policyHolderNameForCode(n).getBytes(StandardCharsets.UTF_8);
+        }
+
+        long payloadLength = 4L * Integer.BYTES * (store.contractCount() + store.accountCount())
+                + indexMapBytes(store.contractIndexMap()) + indexMapBytes(store.accountIndexMap())
+                + indexMapBytes(store.bankIndexMap());
+        for (byte[] bankName : bankNames) {
+            payloadLength += 2 * Integer.BYTES + bankName.length;
+        }
+        for (byte[] name : names) {
+            payloadLength += Integer.BYTES + name.length;
+        }
+        if (HEADER_BYTES + payloadLength > Integer.MAX_VALUE) {
+            throw new IOException("Provider snapshot would exceed 2 GB");
+        }
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + payloadLength);
+            ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer payload = slice(buffer, HEADER_BYTES, (int) payloadLength);
+            writeInts(payload, store.contractIdColumn());
+            writeInts(payload, store.contractAccountIdColumn());
+            writeInts(payload, store.contractAccountIndexColumn());
+            writeInts(payload, store.contractNameCodeColumn());
+            writeInts(payload, store.accountIdColumn());
+            writeInts(payload, store.accountBankIdColumn());
+            writeInts(payload, store.accountNumberColumn());
+            writeInts(payload, store.accountBankIndexColumn());
+            writeIndexMap(payload, store.contractIndexMap());
+            writeIndexMap(payload, store.accountIndexMap());
+            writeIndexMap(payload, store.bankIndexMap());
+            for (int b = 0; b < bankNames.length; b++) {
+                payload.putInt(store.bank(b).getId());
+                writeBytes(payload, bankNames[b]);
+            }
+            for (byte[] name : names) {
+                writeBytes(payload, name);
+            }
+
+            CRC32 crc = new CRC32();
+            payload.flip();
+            crc.update(payload);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(8, generation);
+            buffer.putLong(16, crc.getValue());
+            buffer.putLong(24, payloadLength);
+            buffer.putInt(32, store.contractCount());
+            buffer.putInt(36, store.accountCount());
+            buffer.putInt(40, store.bankCount());
+            buffer.putInt(44, store.nameCount());
+            mapped.force();
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long indexMapBytes(IntIndexMap map) {
+        return 2L * Integer.BYTES + 2L * Integer.BYTES * map.keys().length;
+    }
+
+    private static void writeInts(ByteBuffer payload, int[] values) {
+        payload.asIntBuffer().put(values);
+        payload.position(payload.position() + values.length * Integer.BYTES);
+    }
+
+    private static void writeIndexMap(ByteBuffer payload, IntIndexMap map) {
+        payload.putInt(map.size());
+        payload.putInt(map.keys().length);
+        writeInts(payload, map.keys());
+        writeInts(payload, map.values());
+    }
+
+    private static void writeBytes(ByteBuffer payload, byte[] bytes) {
+        payload.putInt(bytes.length);
+        payload.put(bytes);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset).limit(offset + length);
+        return duplicate.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,86 @@
+package tune.the.code.v2;
+
+import config.Config;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Alternative to {@link InkassoBatch} and {@link Print} in which every stage pulls its work instead of being pushed
+ * to: a {@link ContractSource}, an {@link InkassoProcessor} and a {@link PrintSubscriber}, joined by {@link Flow}
+ * demand. Each stage only asks for as many requests as it has room for, so the requests in existence at any time
+ * are bounded by the prefetches and the buffer, whatever the size of the data set. Counts are the same as those
+ * {@code Main} checks.
+ *
+ * @since 18.10.2026
+ */
+public class ReactiveBatch {
+
+    public static final int DEFAULT_PREFETCH = 64;
+    public static final int DEFAULT_BUFFER_SIZE = 256;
+
+    private final boolean turnToTheDarkSide;
+    private final InkassoProcessor inkassoProcessor;
+    private final PrintSubscriber printSubscriber;
+
+    public ReactiveBatch(boolean turnToTheDarkSide) {
+        this(turnToTheDarkSide, turnToTheDarkSide ? InkassoService.DARK_SIDE : InkassoService.SYSTEM,
+             turnToTheDarkSide ? PrintService.DARK_SIDE : PrintService.SYSTEM);
+    }
+
+    public ReactiveBatch(boolean turnToTheDarkSide, InkassoService inkassoService, PrintService printService) {
+        this(turnToTheDarkSide, inkassoService, printService,
+             turnToTheDarkSide ? Runtime.getRuntime().availableProcessors() : Config.INKASSO_CAPABILITIES,
+             turnToTheDarkSide ? Runtime.getRuntime().availableProcessors() : Config.PRINT_CAPABILITIES,
+             DEFAULT_PREFETCH, DEFAULT_BUFFER_SIZE, ExecutionBackend.best(), BatchMetrics.getDefault());
+    }
+
+    /**
+     * @param prefetch   requests each stage takes ahead of its workers
+     * @param bufferSize collected requests the inkasso stage holds until printing asks for them
+     */
+    public ReactiveBatch(boolean turnToTheDarkSide, InkassoService inkassoService, PrintService printService,
+                         int inkassoParallelism, int printConcurrency, int prefetch, int bufferSize,
+                         ExecutionBackend executionBackend, BatchMetrics metrics) {
+        this.turnToTheDarkSide = turnToTheDarkSide;
+        this.inkassoProcessor = new InkassoProcessor(inkassoService, inkassoParallelism, prefetch, bufferSize,
+                                                     executionBackend, metrics);
+        this.printSubscriber = new PrintSubscriber(printService, printConcurrency, prefetch, executionBackend,
+                                                   metrics);
+    }
+
+    public int getInkassoCount() {
+        return inkassoProcessor.getInkassoCount();
+    }
+
+    public int getPrintRequestsCount() {
+        return inkassoProcessor.getPrintRequestsCount();
+    }
+
+    /**
+     * @return successful prints so far, may be read while the batch is running
+     */
+    public int getPrintCount() {
+        return printSubscriber.getPrintCount();
+    }
+
+    /**
+     * Subscribes the stages from the end, so that demand flows from the print stage up to the source, and waits
+     * until the last confirmation is printed.
+     */
+    public void runInkassoBatch(ContractStore store) {
+        inkassoProcessor.subscribe(printSubscriber);
+        new ContractSource(store).subscribe(inkassoProcessor);
+        try {
+            printSubscriber.getCompletion().get();
+        } catch (InterruptedException e) {
+            System.err.println(e.getLocalizedMessage());
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+        LogSink.getDefault().flush();
+        if (turnToTheDarkSide) {
+            Print.overridePrintCount(getPrintCount());
+        }
+    }
+}
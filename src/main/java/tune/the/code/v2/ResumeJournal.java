@@ -0,0 +1,275 @@
+package tune.the.code.v2;
+
+import datamodel.Contract;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers which contracts went through inkasso and which confirmations were printed, so that a batch restarted
+ * after a crash neither collects nor prints twice.
+ * <p>
+ * The journal is a memory-mapped file holding two bitsets indexed by contract id. Bits are only ever set, never
+ * cleared, which makes every update idempotent and the file valid at any point in time. A mark is a plain write to
+ * the mapping and survives the death of the JVM as soon as it is made. Only a crash of the machine can lose marks,
+ * at most those since the last {@link MappedByteBuffer#force()}, which runs periodically in the background instead
+ * of once per contract. Work whose mark was lost is repeated, never skipped.
+ * <p>
+ * The file belongs to one data set and to one run. {@link #open(long, int)} starts over if it was written for a
+ * different data set, and {@link #complete()} deletes it once the run is through, so that only an unfinished run is
+ * ever resumed and a later run over the same data does the whole batch again. A run that dies between completing
+ * the journal and reporting its result is done once more from scratch.
+ *
+ * @since 18.10.2026
+ */
+public class ResumeJournal implements AutoCloseable {
+
+    public static final long DEFAULT_FORCE_PERIOD_MILLIS = 200;
+
+    private static final int MAGIC = 0x494A524E; // "IJRN"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int DATASET_KEY_OFFSET = 8;
+    private static final int CAPACITY_OFFSET = 16;
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final Path file;
+    private final long forcePeriodMillis;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private FileChannel channel;
+    private volatile MappedByteBuffer buffer;
+    private int capacity;
+    private int printedOffset;
+    private ScheduledExecutorService forcer;
+    private volatile boolean dirty;
+
+    public ResumeJournal(Path file) {
+        this(file, DEFAULT_FORCE_PERIOD_MILLIS);
+    }
+
+    /**
+     * Nothing is opened until {@link #open(long, int)}, the size of the bitsets depends on the contracts.
+     */
+    public ResumeJournal(Path file, long forcePeriodMillis) {
+        this.file = file;
+        this.forcePeriodMillis = forcePeriodMillis;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Identifies a data set by its contracts, so that a journal is never applied to different data.
+     */
+    public static long datasetKey(Collection<Contract> contracts) {
+        long key = contracts.size();
+        for (Contract contract : contracts) {
+            Integer bankAccountId = contract.getBankAccountId();
+            key = key * 31 + contract.getId();
+            key = key * 31 + (bankAccountId == null ? -1 : bankAccountId);
+        }
+        return key;
+    }
+
+    /**
+     * Same key as {@link #datasetKey(Collection)} for the contracts the store was built from.
+     */
+    public static long datasetKey(ContractStore store) {
+        long key = store.contractCount();
+        for (int c = 0; c < store.contractCount(); c++) {
+            key = key * 31 + store.contractId(c);
+            key = key * 31 + store.accountIdOfContract(c);
+        }
+        return key;
+    }
+
+    public static int maxContractId(ContractStore store) {
+        int max = -1;
+        for (int c = 0; c < store.contractCount(); c++) {
+            max = Math.max(max, store.contractId(c));
+        }
+        return max;
+    }
+
+    public static int maxContractId(Collection<Contract> contracts) {
+        int max = -1;
+        for (Contract contract : contracts) {
+            max = Math.max(max, contract.getId());
+        }
+        return max;
+    }
+
+    /**
+     * Maps the journal, keeping its marks if it was written for the same data set and capacity. Opening an already
+     * open journal does nothing.
+     *
+     * @param maxContractId the largest contract id that will be marked
+     */
+    public synchronized void open(long datasetKey, int maxContractId) {
+        if (buffer != null) {
+            return;
+        }
+        int words = (maxContractId + 1 + Long.SIZE - 1) / Long.SIZE;
+        int bitsetBytes = words * Long.BYTES;
+        long size = HEADER_BYTES + 2L * bitsetBytes;
+        MappedByteBuffer mapped;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                       StandardOpenOption.WRITE);
+            boolean reusable = channel.size() == size;
+            if (!reusable) {
+                channel.truncate(0);
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (reusable && (mapped.getInt(MAGIC_OFFSET) != MAGIC || mapped.getInt(VERSION_OFFSET) != VERSION
+                    || mapped.getLong(DATASET_KEY_OFFSET) != datasetKey
+                    || mapped.getInt(CAPACITY_OFFSET) != words * Long.SIZE)) {
+                reusable = false;
+                mapped.putInt(MAGIC_OFFSET, 0);
+                for (int offset = HEADER_BYTES; offset < size; offset += Long.BYTES) {
+                    mapped.putLong(offset, 0);
+                }
+            }
+            if (!reusable) {
+                // header last, a journal without a valid header is never trusted
+                mapped.putInt(CAPACITY_OFFSET, words * Long.SIZE);
+                mapped.putLong(DATASET_KEY_OFFSET, datasetKey);
+                mapped.putInt(VERSION_OFFSET, VERSION);
+                mapped.force();
+                mapped.putInt(MAGIC_OFFSET, MAGIC);
+                mapped.force();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open resume journal " + file, e);
+        }
+        capacity = words * Long.SIZE;
+        printedOffset = HEADER_BYTES + bitsetBytes;
+        // published last, marking threads only look at the other fields once they see the mapping
+        buffer = mapped;
+
+        forcer = Executors.newSingleThreadScheduledExecutor(new InkassoScheduler.WorkerThreadFactory("journal-"));
+        forcer.scheduleWithFixedDelay(this::forceIfDirty, forcePeriodMillis, forcePeriodMillis,
+                                      TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isInkassoDone(int contractId) {
+        return isSet(HEADER_BYTES, contractId);
+    }
+
+    public boolean isPrinted(int contractId) {
+        return isSet(printedOffset, contractId);
+    }
+
+    public void markInkassoDone(int contractId) {
+        set(HEADER_BYTES, contractId);
+    }
+
+    public void markPrinted(int contractId) {
+        set(printedOffset, contractId);
+    }
+
+    private boolean isSet(int bitsetOffset, int contractId) {
+        checkContractId(contractId);
+        return (buffer.getLong(bitsetOffset + (contractId >>> 6) * Long.BYTES) & (1L << contractId)) != 0;
+    }
+
+    /**
+     * Marks are written into the mapping under a lock striped by word. Two marks in the same word would otherwise
+     * each write back a stale copy of the other's bit.
+     */
+    private void set(int bitsetOffset, int contractId) {
+        checkContractId(contractId);
+        int word = contractId >>> 6;
+        int offset = bitsetOffset + word * Long.BYTES;
+        synchronized (locks[word & (LOCK_STRIPES - 1)]) {
+            buffer.putLong(offset, buffer.getLong(offset) | (1L << contractId));
+        }
+        if (!dirty) {
+            dirty = true;
+        }
+    }
+
+    private void checkContractId(int contractId) {
+        if (buffer == null) {
+            throw new IllegalStateException("Resume journal " + file + " is not open");
+        }
+        if (contractId < 0 || contractId >= capacity) {
+            throw new IllegalArgumentException("Contract id " + contractId + " is outside of the journal");
+        }
+    }
+
+    private void forceIfDirty() {
+        if (dirty) {
+            dirty = false;
+            buffer.force();
+        }
+    }
+
+    /**
+     * Ends the run the journal was kept for: closes it and deletes the file. Call it once every contract has been
+     * seen through, a journal that is only closed is resumed by the next run.
+     */
+    public synchronized void complete() {
+        boolean wasOpen = buffer != null;
+        close();
+        if (!wasOpen) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Could not delete resume journal " + file + ": " + e.getLocalizedMessage());
+            invalidate();
+        }
+    }
+
+    /**
+     * Clears the magic of a journal that could not be deleted, so that it is never trusted again.
+     */
+    private void invalidate() {
+        try (FileChannel invalid = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            invalid.write(ByteBuffer.allocate(Integer.BYTES), MAGIC_OFFSET);
+            invalid.force(true);
+        } catch (IOException e) {
+            System.err.println("Could not invalidate resume journal " + file + ": " + e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Forces the outstanding marks to disk and closes the journal, which keeps them for the next run. Closing a
+     * journal that was never opened does nothing.
+     */
+    @Override
+    public synchronized void close() {
+        if (buffer == null) {
+            return;
+        }
+        forcer.shutdown();
+        try {
+            forcer.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        buffer.force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Could not close resume journal " + file + ": " + e.getLocalizedMessage());
+        }
+        buffer = null;
+    }
+}
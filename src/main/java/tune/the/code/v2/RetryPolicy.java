@@ -0,0 +1,87 @@
+package tune.the.code.v2;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How often and how soon a {@link RetryScheduler} tries a failed call again. The backoff doubles with every attempt
+ * up to a cap and is drawn at random below that ("full jitter"), so that calls which failed together do not all come
+ * back together. The budget caps retries at a fraction of the first attempts plus a small reserve, so that a system
+ * that is down for good gets a few retries, not a second copy of the whole load.
+ *
+ * @since 18.10.2026
+ */
+public final class RetryPolicy {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+    public static final double DEFAULT_BUDGET_RATIO = 0.2;
+    public static final int DEFAULT_BUDGET_RESERVE = 10;
+
+    private final int maxAttempts;
+    private final long baseDelayNanos;
+    private final long maxDelayNanos;
+    private final double budgetRatio;
+    private final int budgetReserve;
+
+    /**
+     * @param maxAttempts   calls per item including the first one
+     * @param budgetRatio   retries allowed per first attempt
+     * @param budgetReserve retries allowed before any first attempt was made
+     */
+    public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay, TimeUnit unit, double budgetRatio,
+                       int budgetReserve) {
+        if (maxAttempts < 1 || baseDelay < 0 || maxDelay < baseDelay || budgetRatio < 0 || budgetReserve < 0) {
+            throw new IllegalArgumentException("Need maxAttempts >= 1, 0 <= baseDelay <= maxDelay and a budget >= 0");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayNanos = unit.toNanos(baseDelay);
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.budgetRatio = budgetRatio;
+        this.budgetReserve = budgetReserve;
+    }
+
+    /**
+     * Starts at the duration of one call of {@link system.InkassoSystem}.
+     */
+    public static RetryPolicy forInkassoSystem() {
+        return new RetryPolicy(DEFAULT_MAX_ATTEMPTS, 20, 1000, TimeUnit.MILLISECONDS, DEFAULT_BUDGET_RATIO,
+                               DEFAULT_BUDGET_RESERVE);
+    }
+
+    /**
+     * Starts at the duration of one call of {@link system.PrintSystem}.
+     */
+    public static RetryPolicy forPrintSystem() {
+        return new RetryPolicy(DEFAULT_MAX_ATTEMPTS, 100, 5000, TimeUnit.MILLISECONDS, DEFAULT_BUDGET_RATIO,
+                               DEFAULT_BUDGET_RESERVE);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public double getBudgetRatio() {
+        return budgetRatio;
+    }
+
+    public int getBudgetReserve() {
+        return budgetReserve;
+    }
+
+    /**
+     * @param failedAttempt 1 for the first call
+     * @return a random delay between 0 and {@code min(maxDelay, baseDelay * 2^(failedAttempt - 1))}
+     */
+    public long backoffNanos(int failedAttempt) {
+        int doublings = Math.min(Math.max(0, failedAttempt - 1), 62);
+        long ceiling = baseDelayNanos > (maxDelayNanos >> doublings) ? maxDelayNanos : baseDelayNanos << doublings;
+        return ceiling == 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RetryPolicy{maxAttempts=%d, backoff=%d..%d ms, budget=%.2f per call + %d}",
+                             maxAttempts, TimeUnit.NANOSECONDS.toMillis(baseDelayNanos),
+                             TimeUnit.NANOSECONDS.toMillis(maxDelayNanos), budgetRatio, budgetReserve);
+    }
+}
@@ -0,0 +1,221 @@
+package tune.the.code.v2;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tries failed calls to one downstream system again, without holding on to a worker while it waits: a failed item
+ * is handed over to a {@link HashedTimerWheel} and the worker goes on with the next one. Once the backoff of the
+ * {@link RetryPolicy} has passed, the timer thread hands the item back to the caller's own queue through a
+ * {@link Resubmission}, which must not block. Items that run out of attempts or of the retry budget go to the
+ * {@link DeadLetterQueue}.
+ * <p>
+ * An item counts as pending from the moment its retry is scheduled until the retried call reported back through
+ * {@link #attemptDone(boolean)}. A caller that fails a retried call again schedules the next retry before it reports
+ * back, so the pending count only drops to zero once all retries are over.
+ *
+ * @since 18.10.2026
+ */
+public class RetryScheduler {
+
+    /**
+     * Puts a retry back into the caller's queue.
+     */
+    @FunctionalInterface
+    public interface Resubmission {
+
+        /**
+         * Called on the timer thread, must not block.
+         *
+         * @param attempt the number of the call about to be made, 2 for the first retry
+         * @return false if there is no room right now, the retry is offered again with the next tick
+         */
+        boolean tryResubmit(int attempt);
+    }
+
+    // the budget is kept in thousandths of a retry
+    private static final long BUDGET_SCALE = 1000;
+
+    private final String name;
+    private final RetryPolicy policy;
+    private final HashedTimerWheel timer;
+    private final DeadLetterQueue deadLetters;
+    private final long budgetDeposit;
+
+    private final AtomicLong budget;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Object idle = new Object();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder recovered = new LongAdder();
+    private final LongAdder overBudget = new LongAdder();
+
+    public RetryScheduler(String name, RetryPolicy policy, DeadLetterQueue deadLetters) {
+        this(name, policy, HashedTimerWheel.getDefault(), deadLetters);
+    }
+
+    public RetryScheduler(String name, RetryPolicy policy, HashedTimerWheel timer, DeadLetterQueue deadLetters) {
+        this.name = name;
+        this.policy = policy;
+        this.timer = timer;
+        this.deadLetters = deadLetters;
+        this.budgetDeposit = Math.round(policy.getBudgetRatio() * BUDGET_SCALE);
+        this.budget = new AtomicLong(policy.getBudgetReserve() * BUDGET_SCALE);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public DeadLetterQueue getDeadLetters() {
+        return deadLetters;
+    }
+
+    /**
+     * Counts a first attempt towards the retry budget.
+     */
+    public void recordCall() {
+        calls.increment();
+        budget.addAndGet(budgetDeposit);
+    }
+
+    /**
+     * Schedules the next attempt, or gives up on the item if it is out of attempts or the budget is used up.
+     *
+     * @param failedAttempt the number of the call that failed, 1 for the first one
+     */
+    public void retry(int contractId, int failedAttempt, String reason, Resubmission resubmission) {
+        if (failedAttempt >= policy.getMaxAttempts()) {
+            deadLetter(contractId, failedAttempt, reason);
+            return;
+        }
+        if (!withdrawFromBudget()) {
+            overBudget.increment();
+            deadLetter(contractId, failedAttempt, reason + ", retry budget used up");
+            return;
+        }
+        pending.incrementAndGet();
+        retries.increment();
+        Runnable resubmit = new Runnable() {
+            @Override
+            public void run() {
+                boolean accepted;
+                try {
+                    accepted = resubmission.tryResubmit(failedAttempt + 1);
+                } catch (RuntimeException e) {
+                    deadLetter(contractId, failedAttempt, reason + ", could not be resubmitted: " + e);
+                    finished();
+                    return;
+                }
+                if (!accepted) {
+                    timer.schedule(this, 0, TimeUnit.NANOSECONDS);
+                }
+            }
+        };
+        try {
+            timer.schedule(resubmit, policy.backoffNanos(failedAttempt), TimeUnit.NANOSECONDS);
+        } catch (IllegalStateException e) {
+            deadLetter(contractId, failedAttempt, reason + ", " + e.getMessage());
+            finished();
+        }
+    }
+
+    /**
+     * Gives up on an item right away.
+     */
+    public void deadLetter(int contractId, int attempts, String reason) {
+        deadLetters.add(name, contractId, attempts, reason);
+    }
+
+    /**
+     * Reports the outcome of a retried call, i.e. of every call with an attempt number above 1.
+     */
+    public void attemptDone(boolean success) {
+        if (success) {
+            recovered.increment();
+        }
+        finished();
+    }
+
+    private void finished() {
+        if (pending.decrementAndGet() == 0) {
+            synchronized (idle) {
+                idle.notifyAll();
+            }
+        }
+    }
+
+    private boolean withdrawFromBudget() {
+        long current;
+        do {
+            current = budget.get();
+            if (current < BUDGET_SCALE) {
+                return false;
+            }
+        } while (!budget.compareAndSet(current, current - BUDGET_SCALE));
+        return true;
+    }
+
+    /**
+     * @return items waiting for or in their next attempt
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    public boolean isIdle() {
+        return pending.get() == 0;
+    }
+
+    /**
+     * Blocks until no item is pending. Only meaningful once no first attempt can fail anymore.
+     */
+    public void awaitIdle() throws InterruptedException {
+        synchronized (idle) {
+            while (pending.get() != 0) {
+                idle.wait();
+            }
+        }
+    }
+
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    public long getRecoveredCount() {
+        return recovered.sum();
+    }
+
+    public long getDeadLetterCount() {
+        return deadLetters.getCount(name);
+    }
+
+    public void registerGauges(BatchMetrics metrics) {
+        metrics.registerGauge(name + ".retriesPending", pending::get);
+    }
+
+    public String getStatistics() {
+        return String.format("Retries %s: %d first attempts, %d retries, %d recovered, %d dead letters"
+                                     + " (%d over the budget)",
+                             name, calls.sum(), getRetryCount(), getRecoveredCount(), getDeadLetterCount(),
+                             overBudget.sum());
+    }
+
+    /**
+     * Prints the statistics and the dead letters of this system.
+     */
+    public void printReport() {
+        System.out.println(getStatistics());
+        String deadLetterReport = deadLetters.report(name);
+        if (!deadLetterReport.isEmpty()) {
+            System.out.println(deadLetterReport);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RetryScheduler{" + name + ", " + policy + "}";
+    }
+}
@@ -0,0 +1,354 @@
+package tune.the.code.v2;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded multi-producer/multi-consumer queue on a pre-allocated array (Vyukov's sequence-per-slot algorithm).
+ * Unlike {@link java.util.concurrent.LinkedBlockingQueue} it does not allocate a node per element, and a full
+ * queue pushes back on producers.
+ * <p>
+ * Every slot carries a sequence number. A producer may claim slot {@code tail} once its sequence equals
+ * {@code tail}; after writing the element it publishes {@code tail + 1}. A consumer may claim slot {@code head}
+ * once its sequence equals {@code head + 1}; after reading it publishes {@code head + capacity} so the slot is
+ * free for the next lap.
+ * <p>
+ * The iterator is a weakly consistent snapshot and does not support removal.
+ *
+ * @since 18.10.2026
+ */
+public class RingBufferQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    private static final int SPIN_TRIES = 100;
+
+    private final int capacity;
+    private final int mask;
+    private final Object[] buffer;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final WaitStrategy waitStrategy;
+
+    // only used by WaitStrategy.BLOCKING
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final AtomicInteger waitingConsumers = new AtomicInteger();
+    private final AtomicInteger waitingProducers = new AtomicInteger();
+
+    public RingBufferQueue(int capacity) {
+        this(capacity, WaitStrategy.BLOCKING);
+    }
+
+    /**
+     * @param capacity is rounded up to the next power of two
+     */
+    public RingBufferQueue(int capacity, WaitStrategy waitStrategy) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30, was " + capacity);
+        }
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.buffer = new Object[this.capacity];
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.waitStrategy = waitStrategy;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    // -------------------------------------------------------------------------
+    // Non-blocking operations
+    // -------------------------------------------------------------------------
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        while (true) {
+            long pos = tail.get();
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buffer[index] = e;
+                    sequences.set(index, pos + 1);
+                    signalConsumer();
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false;
+            }
+            // else: another producer claimed this slot, reload tail
+        }
+    }
+
+    @Override
+    public E poll() {
+        E e = pollWithoutSignal();
+        if (e != null) {
+            signalProducer();
+        }
+        return e;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E pollWithoutSignal() {
+        while (true) {
+            long pos = head.get();
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    E e = (E) buffer[index];
+                    buffer[index] = null;
+                    sequences.set(index, pos + capacity);
+                    return e;
+                }
+            } else if (diff < 0) {
+                return null;
+            }
+            // else: another consumer claimed this slot, reload head
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        long pos = head.get();
+        int index = (int) pos & mask;
+        if (sequences.get(index) != pos + 1) {
+            return null;
+        }
+        return (E) buffer[index];
+    }
+
+    @Override
+    public int size() {
+        // read head first, so that a concurrent consumer can only make the result too large, never negative
+        long h = head.get();
+        long t = tail.get();
+        return (int) Math.max(0, Math.min(capacity, t - h));
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        int n = 0;
+        E e;
+        while (n < maxElements && (e = pollWithoutSignal()) != null) {
+            c.add(e);
+            n++;
+        }
+        // one wake-up for the whole batch
+        if (n > 0) {
+            signalProducers();
+        }
+        return n;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        List<E> snapshot = new ArrayList<>(size());
+        long end = tail.get();
+        for (long pos = head.get(); pos < end; pos++) {
+            int index = (int) pos & mask;
+            @SuppressWarnings("unchecked")
+            E e = (E) buffer[index];
+            if (sequences.get(index) == pos + 1 && e != null) {
+                snapshot.add(e);
+            }
+        }
+        Iterator<E> it = snapshot.iterator();
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return it.next();
+            }
+        };
+    }
+
+    // -------------------------------------------------------------------------
+    // Blocking operations
+    // -------------------------------------------------------------------------
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        offer(e, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = deadline(timeout, unit);
+        for (int attempt = 0; ; attempt++) {
+            if (offer(e)) {
+                return true;
+            }
+            if (!await(attempt, deadline, true)) {
+                // a slot may have been freed while we waited for the CPU after the deadline
+                return offer(e);
+            }
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        return poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = deadline(timeout, unit);
+        for (int attempt = 0; ; attempt++) {
+            E e = poll();
+            if (e != null) {
+                return e;
+            }
+            if (!await(attempt, deadline, false)) {
+                // an element may have arrived while we waited for the CPU after the deadline
+                return poll();
+            }
+        }
+    }
+
+    private static long deadline(long timeout, TimeUnit unit) {
+        long nanos = unit.toNanos(timeout);
+        long now = System.nanoTime();
+        // saturate instead of overflowing for "wait forever"
+        return nanos >= Long.MAX_VALUE - now ? Long.MAX_VALUE : now + nanos;
+    }
+
+    /**
+     * Waits according to the wait strategy until the other side made progress or the deadline passed.
+     *
+     * @return false if the deadline has passed
+     */
+    private boolean await(int attempt, long deadline, boolean producer) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            return false;
+        }
+        switch (waitStrategy) {
+            case SPINNING:
+                return true;
+            case YIELDING:
+                if (attempt >= SPIN_TRIES) {
+                    Thread.yield();
+                }
+                return true;
+            case BLOCKING:
+            default:
+                if (attempt < SPIN_TRIES / 10) {
+                    return true;
+                }
+                return producer ? awaitNotFull(remaining) : awaitNotEmpty(remaining);
+        }
+    }
+
+    private boolean awaitNotEmpty(long nanos) throws InterruptedException {
+        lock.lock();
+        waitingConsumers.incrementAndGet();
+        try {
+            // re-check after announcing ourselves, a producer that missed the announcement has published already
+            if (!slotReadable()) {
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return nanos > 0;
+        } finally {
+            waitingConsumers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    private boolean awaitNotFull(long nanos) throws InterruptedException {
+        lock.lock();
+        waitingProducers.incrementAndGet();
+        try {
+            if (!slotWritable()) {
+                nanos = notFull.awaitNanos(nanos);
+            }
+            return nanos > 0;
+        } finally {
+            waitingProducers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    private boolean slotReadable() {
+        long pos = head.get();
+        return sequences.get((int) pos & mask) - (pos + 1) >= 0;
+    }
+
+    private boolean slotWritable() {
+        long pos = tail.get();
+        return sequences.get((int) pos & mask) - pos >= 0;
+    }
+
+    private void signalConsumer() {
+        if (waitingConsumers.get() > 0) {
+            lock.lock();
+            try {
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void signalProducer() {
+        if (waitingProducers.get() > 0) {
+            lock.lock();
+            try {
+                notFull.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void signalProducers() {
+        if (waitingProducers.get() > 0) {
+            lock.lock();
+            try {
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
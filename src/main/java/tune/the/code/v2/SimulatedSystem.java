@@ -0,0 +1,135 @@
+package tune.the.code.v2;
+
+import config.Config;
+import datamodel.BankAccount;
+
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process stand-in for {@link system.InkassoSystem} and {@link system.PrintSystem}. Unlike them, it can be
+ * configured. It admits {@code permits} concurrent callers, holds each call for a latency drawn from a
+ * {@link LatencyDistribution}, and fails a given fraction of the calls. Each instance has its own semaphore and
+ * counters, so one JVM can run several differently sized systems.
+ *
+ * @since 18.10.2026
+ */
+public class SimulatedSystem implements InkassoService, PrintService {
+
+    private final String name;
+    private final int permits;
+    private final Semaphore capabilities;
+    private final LatencyDistribution latency;
+    private final double failureRate;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * @param failureRate between 0 and 1, a failed call still takes its full latency
+     */
+    public SimulatedSystem(String name, int permits, LatencyDistribution latency, double failureRate) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("permits must be positive");
+        }
+        if (failureRate < 0 || failureRate > 1) {
+            throw new IllegalArgumentException("failureRate must be between 0 and 1");
+        }
+        this.name = name;
+        this.permits = permits;
+        this.capabilities = new Semaphore(permits);
+        this.latency = latency;
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * Behaves like {@link system.InkassoSystem}.
+     */
+    public static SimulatedSystem forInkasso() {
+        return new SimulatedSystem("inkasso", Config.INKASSO_CAPABILITIES,
+                                   LatencyDistribution.fixed(Config.INKASSO_DURATION_MILLISECONDS,
+                                                             TimeUnit.MILLISECONDS), 0);
+    }
+
+    /**
+     * Behaves like {@link system.PrintSystem}.
+     */
+    public static SimulatedSystem forPrint() {
+        return new SimulatedSystem("print", Config.PRINT_CAPABILITIES,
+                                   LatencyDistribution.fixed(Config.PRINT_DURATION_MILLISECONDS,
+                                                             TimeUnit.MILLISECONDS), 0);
+    }
+
+    /**
+     * Reads {@code <prefix>.permits}, {@code <prefix>.latency} (see {@link LatencyDistribution#parse(String)}) and
+     * {@code <prefix>.failureRate}. Missing keys keep the values of {@code defaults}.
+     */
+    public static SimulatedSystem fromProperties(Properties properties, String prefix, SimulatedSystem defaults) {
+        String latency = properties.getProperty(prefix + ".latency");
+        return new SimulatedSystem(
+                prefix,
+                Integer.parseInt(properties.getProperty(prefix + ".permits", String.valueOf(defaults.permits))),
+                latency == null ? defaults.latency : LatencyDistribution.parse(latency),
+                Double.parseDouble(properties.getProperty(prefix + ".failureRate",
+                                                          String.valueOf(defaults.failureRate))));
+    }
+
+    public int getPermits() {
+        return permits;
+    }
+
+    @Override
+    public boolean doInkasso(BankAccount bankAccount) {
+        return call();
+    }
+
+    @Override
+    public boolean doPrintInkassoConfirmation(String bankName, BankAccount bankAccount, String policyHolderName) {
+        return call();
+    }
+
+    private boolean call() {
+        try {
+            capabilities.acquire();
+        } catch (InterruptedException e) {
+            System.err.println(name + " call was interrupted");
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        try {
+            calls.increment();
+            TimeUnit.NANOSECONDS.sleep(latency.sampleNanos());
+            if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+                failures.increment();
+                return false;
+            }
+            return true;
+        } catch (InterruptedException e) {
+            System.err.println(name + " call was interrupted");
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            capabilities.release();
+        }
+    }
+
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public long getSuccessCount() {
+        return calls.sum() - failures.sum();
+    }
+
+    public String getStatistics() {
+        return String.format("%s system: %d calls, %d failures, %d permits", name, getCallCount(),
+                             getFailureCount(), permits);
+    }
+}
@@ -0,0 +1,406 @@
+package tune.the.code.v2;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Unbounded queue that keeps at most {@code highWaterMark} elements on the heap and appends the rest, encoded by a
+ * {@link MessageCodec}, to memory-mapped segment files. Producers never block, and the heap the queue takes does
+ * not grow with the backlog. Consumers get the elements in the order they were offered: once an element had to be
+ * spilled, all later ones are spilled as well until consumers have read the spill back.
+ * <p>
+ * A segment is {@code segmentSize} bytes of {@code [length][encoded element]} records. Read segments are cleared
+ * and handed to the writer again, only up to {@value #MAX_FREE_SEGMENTS} are kept around. The segment files are
+ * deleted right after they were mapped, so nothing is left behind after the process ends, whatever the reason.
+ * <p>
+ * Guarded by a single lock, which is fine for a consumer as slow as the print system. The iterator is a snapshot
+ * that decodes the spilled elements and does not support removal.
+ *
+ * @since 18.10.2026
+ */
+public class SpillingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 16 << 20;
+
+    private static final int MAX_FREE_SEGMENTS = 2;
+    private static final int LENGTH_BYTES = Integer.BYTES;
+
+    private final int highWaterMark;
+    private final MessageCodec<E> codec;
+    private final Path directory;
+    private final int segmentSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    // all guarded by lock
+    private final ArrayDeque<E> memory;
+    // oldest first, the writer appends to the last one
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final ArrayDeque<Segment> freeSegments = new ArrayDeque<>();
+    private ByteBuffer encodeBuffer = ByteBuffer.allocate(256);
+    private int spilled;
+    private long spilledTotal;
+    private int segmentsMapped;
+
+    public SpillingQueue(int highWaterMark, MessageCodec<E> codec, Path directory) {
+        this(highWaterMark, codec, directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param directory   where the segment files are created
+     * @param segmentSize bytes per segment file, the largest encoded element has to fit into one
+     */
+    public SpillingQueue(int highWaterMark, MessageCodec<E> codec, Path directory, int segmentSize) {
+        if (highWaterMark < 0 || segmentSize <= LENGTH_BYTES) {
+            throw new IllegalArgumentException("highWaterMark must not be negative and segmentSize must exceed "
+                                                       + LENGTH_BYTES);
+        }
+        this.highWaterMark = highWaterMark;
+        this.codec = codec;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.memory = new ArrayDeque<>(Math.min(highWaterMark, 1024) + 1);
+    }
+
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * @return elements on disk right now
+     */
+    public int getSpilledCount() {
+        lock.lock();
+        try {
+            return spilled;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return elements that went to disk since the queue was created
+     */
+    public long getSpilledTotal() {
+        lock.lock();
+        try {
+            return spilledTotal;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return segment files mapped since the queue was created, recycled ones are not counted again
+     */
+    public int getSegmentsMapped() {
+        lock.lock();
+        try {
+            return segmentsMapped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Never fails for lack of room.
+     *
+     * @throws UncheckedIOException if a segment file can not be created
+     */
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        lock.lock();
+        try {
+            if (spilled == 0 && memory.size() < highWaterMark) {
+                memory.addLast(e);
+            } else {
+                spill(e);
+            }
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll() {
+        lock.lock();
+        try {
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E peek() {
+        lock.lock();
+        try {
+            if (!memory.isEmpty()) {
+                return memory.peekFirst();
+            }
+            return spilled == 0 ? null : read(firstUnreadSegment().reader.duplicate());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return memory.size() + spilled;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        lock.lock();
+        try {
+            int n = 0;
+            E e;
+            while (n < maxElements && (e = dequeue()) != null) {
+                c.add(e);
+                n++;
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        List<E> snapshot;
+        lock.lock();
+        try {
+            snapshot = new ArrayList<>(memory.size() + spilled);
+            snapshot.addAll(memory);
+            for (Segment segment : segments) {
+                ByteBuffer reader = segment.reader.duplicate();
+                while (reader.position() < segment.writer.position()) {
+                    snapshot.add(read(reader));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        Iterator<E> it = snapshot.iterator();
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return it.next();
+            }
+        };
+    }
+
+    // -------------------------------------------------------------------------
+    // Blocking operations, only consumers ever wait
+    // -------------------------------------------------------------------------
+
+    @Override
+    public void put(E e) {
+        offer(e);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) {
+        return offer(e);
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            E e;
+            while ((e = dequeue()) == null) {
+                notEmpty.await();
+            }
+            return e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            E e;
+            while ((e = dequeue()) == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Segments, all called with the lock held
+    // -------------------------------------------------------------------------
+
+    /**
+     * The heap part holds the oldest elements, so it is emptied before the spill is read.
+     */
+    private E dequeue() {
+        if (!memory.isEmpty()) {
+            return memory.pollFirst();
+        }
+        if (spilled == 0) {
+            return null;
+        }
+        E e = read(firstUnreadSegment().reader);
+        if (--spilled == 0) {
+            // the spill is read back completely, the next one starts on a clean segment
+            while (!segments.isEmpty()) {
+                recycle(segments.pollFirst());
+            }
+        }
+        return e;
+    }
+
+    private Segment firstUnreadSegment() {
+        Segment segment = segments.peekFirst();
+        while (segment.reader.position() == segment.writer.position()) {
+            recycle(segments.pollFirst());
+            segment = segments.peekFirst();
+        }
+        return segment;
+    }
+
+    private E read(ByteBuffer reader) {
+        int length = reader.getInt();
+        int end = reader.position() + length;
+        reader.limit(end);
+        try {
+            return codec.decode(reader);
+        } finally {
+            reader.limit(reader.capacity());
+            reader.position(end);
+        }
+    }
+
+    private void spill(E e) {
+        ByteBuffer record = encode(e);
+        int recordSize = LENGTH_BYTES + record.remaining();
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("Encoded message of " + record.remaining()
+                                                       + " bytes does not fit into a segment of " + segmentSize);
+        }
+        Segment segment = segments.peekLast();
+        if (segment == null || segment.writer.remaining() < recordSize) {
+            segment = freeSegments.isEmpty() ? mapSegment() : freeSegments.pollFirst();
+            segments.addLast(segment);
+        }
+        segment.writer.putInt(record.remaining());
+        segment.writer.put(record);
+        spilled++;
+        spilledTotal++;
+    }
+
+    private ByteBuffer encode(E e) {
+        while (true) {
+            encodeBuffer.clear();
+            try {
+                codec.encode(e, encodeBuffer);
+                encodeBuffer.flip();
+                return encodeBuffer;
+            } catch (BufferOverflowException tooSmall) {
+                encodeBuffer = ByteBuffer.allocate(encodeBuffer.capacity() * 2);
+            }
+        }
+    }
+
+    private Segment mapSegment() {
+        try {
+            Path file = Files.createTempFile(directory, "spill-", ".segment");
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            }
+            try {
+                // the mapping stays valid, the file is gone once the mapping is
+                Files.delete(file);
+            } catch (IOException e) {
+                file.toFile().deleteOnExit();
+            }
+            segmentsMapped++;
+            return new Segment(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create a spill segment in " + directory, e);
+        }
+    }
+
+    /**
+     * Dropped segments are unmapped once they are garbage collected.
+     */
+    private void recycle(Segment segment) {
+        if (freeSegments.size() < MAX_FREE_SEGMENTS) {
+            segment.clear();
+            freeSegments.addLast(segment);
+        }
+    }
+
+    private static final class Segment {
+
+        private final ByteBuffer writer;
+        private final ByteBuffer reader;
+
+        private Segment(MappedByteBuffer buffer) {
+            this.writer = buffer.duplicate();
+            this.reader = buffer.duplicate();
+        }
+
+        private void clear() {
+            writer.clear();
+            reader.clear();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package tune.the.code.v2;
+
+/**
+ * How a thread waits on a {@link RingBufferQueue} that is full (producer) or empty (consumer).
+ *
+ * @since 18.10.2026
+ */
+public enum WaitStrategy {
+
+    /**
+     * Parks the thread on a condition until the other side signals. Lowest CPU usage, highest hand-off latency.
+     */
+    BLOCKING,
+
+    /**
+     * Busy spins. Lowest hand-off latency, burns a core per waiting thread.
+     */
+    SPINNING,
+
+    /**
+     * Spins for a short while and then yields the CPU between attempts.
+     */
+    YIELDING
+}
@@ -0,0 +1,77 @@
+package tune.the.code.v2;
+
+import config.GeneratorConfig;
+
+import java.util.Properties;
+
+/**
+ * Shape of a synthetic data set for {@link WorkloadGenerator}. Goes beyond {@link GeneratorConfig} in scale and in
+ * skew: contracts pick their account from a Zipf-like distribution, so a few hot accounts carry many contracts.
+ *
+ * @since 18.10.2026
+ */
+public class WorkloadConfig {
+
+    public final int contractCount;
+    public final int accountCount;
+    public final int bankCount;
+    /**
+     * Fraction of contracts without a bank account.
+     */
+    public final double nullAccountRatio;
+    /**
+     * Zipf exponent of the account popularity. 0 spreads contracts evenly, 1 and above concentrate them on a few
+     * hot accounts.
+     */
+    public final double accountSkew;
+    public final int nameCount;
+    public final long seed;
+
+    public WorkloadConfig(int contractCount, int accountCount, int bankCount, double nullAccountRatio,
+                          double accountSkew, int nameCount, long seed) {
+        if (contractCount < 0 || accountCount < 1 || bankCount < 1 || nameCount < 1) {
+            throw new IllegalArgumentException("Need contracts >= 0 and at least one account, bank and name");
+        }
+        if (nullAccountRatio < 0 || nullAccountRatio > 1 || accountSkew < 0) {
+            throw new IllegalArgumentException("nullAccountRatio must be between 0 and 1, accountSkew positive");
+        }
+        this.contractCount = contractCount;
+        this.accountCount = accountCount;
+        this.bankCount = bankCount;
+        this.nullAccountRatio = nullAccountRatio;
+        this.accountSkew = accountSkew;
+        this.nameCount = nameCount;
+        this.seed = seed;
+    }
+
+    /**
+     * Same sizes as a {@link GeneratorConfig}, accounts picked evenly.
+     */
+    public static WorkloadConfig of(GeneratorConfig config) {
+        return new WorkloadConfig(config.contractCount, config.accountCount, config.bankCount,
+                                  1 - config.withAccountRatio, 0, 100, 1);
+    }
+
+    /**
+     * Reads {@code workload.contracts}, {@code .accounts}, {@code .banks}, {@code .nullAccountRatio},
+     * {@code .accountSkew}, {@code .names} and {@code .seed}. Missing keys keep the values of {@code defaults}.
+     */
+    public static WorkloadConfig fromProperties(Properties properties, WorkloadConfig defaults) {
+        return new WorkloadConfig(
+                Integer.parseInt(properties.getProperty("workload.contracts", String.valueOf(defaults.contractCount))),
+                Integer.parseInt(properties.getProperty("workload.accounts", String.valueOf(defaults.accountCount))),
+                Integer.parseInt(properties.getProperty("workload.banks", String.valueOf(defaults.bankCount))),
+                Double.parseDouble(properties.getProperty("workload.nullAccountRatio",
+                                                          String.valueOf(defaults.nullAccountRatio))),
+                Double.parseDouble(properties.getProperty("workload.accountSkew",
+                                                          String.valueOf(defaults.accountSkew))),
+                Integer.parseInt(properties.getProperty("workload.names", String.valueOf(defaults.nameCount))),
+                Long.parseLong(properties.getProperty("workload.seed", String.valueOf(defaults.seed))));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d contracts, %d accounts, %d banks, %.2f without account, skew %.2f, %d names, seed %d",
+                             contractCount, accountCount, bankCount, nullAccountRatio, accountSkew, nameCount, seed);
+    }
+}
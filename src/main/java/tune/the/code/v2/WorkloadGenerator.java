@@ -0,0 +1,156 @@
+package tune.the.code.v2;
+
+import datamodel.Bank;
+import datamodel.BankAccount;
+import datamodel.Contract;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.IntFunction;
+
+/**
+ * Generates synthetic contracts, accounts and banks straight into the columns of a {@link ContractStore}, without
+ * the {@code dataprovider} classes and without an object per contract. That scales to tens of millions of contracts
+ * and can run any number of times per JVM. The same configuration always yields the same data.
+ *
+ * @since 18.10.2026
+ */
+public final class WorkloadGenerator {
+
+    private WorkloadGenerator() {
+    }
+
+    public static ContractStore generate(WorkloadConfig config) {
+        SplittableRandom random = new SplittableRandom(config.seed);
+
+        Bank[] banks = new Bank[config.bankCount];
+        IntIndexMap bankIndex = new IntIndexMap(config.bankCount);
+        for (int b = 0; b < config.bankCount; b++) {
+            banks[b] = new Bank(b + 1, "Bank " + (b + 1));
+            bankIndex.put(b + 1, b);
+        }
+
+        int[] accountIds = new int[config.accountCount];
+        int[] accountBankIds = new int[config.accountCount];
+        int[] accountNumbers = new int[config.accountCount];
+        int[] accountBankIndexes = new int[config.accountCount];
+        IntIndexMap accountIndex = new IntIndexMap(config.accountCount);
+        for (int a = 0; a < config.accountCount; a++) {
+            int b = random.nextInt(config.bankCount);
+            accountIds[a] = a + 1;
+            accountBankIds[a] = b + 1;
+            accountNumbers[a] = 10_000_000 + random.nextInt(90_000_000);
+            accountBankIndexes[a] = b;
+            accountIndex.put(a + 1, a);
+        }
+
+        String[] names = new String[config.nameCount];
+        for (int n = 0; n < config.nameCount; n++) {
+            names[n] = "Policyholder," + (n + 1);
+        }
+
+        int[] contractIds = new int[config.contractCount];
+        int[] contractAccountIds = new int[config.contractCount];
+        int[] contractAccountIndexes = new int[config.contractCount];
+        int[] contractNameCodes = new int[config.contractCount];
+        IntIndexMap contractIndex = new IntIndexMap(config.contractCount);
+        AccountPicker accounts = new AccountPicker(config.accountCount, config.accountSkew);
+        for (int c = 0; c < config.contractCount; c++) {
+            contractIds[c] = c + 1;
+            if (random.nextDouble() < config.nullAccountRatio) {
+                contractAccountIds[c] = ContractStore.NOT_FOUND;
+                contractAccountIndexes[c] = ContractStore.NOT_FOUND;
+            } else {
+                int a = accounts.pick(random);
+                contractAccountIds[c] = accountIds[a];
+                contractAccountIndexes[c] = a;
+            }
+            contractNameCodes[c] = random.nextInt(config.nameCount);
+            contractIndex.put(c + 1, c);
+        }
+
+        return new ContractStore(contractIds, contractAccountIds, contractAccountIndexes, contractNameCodes, names,
+                                 accountIds, accountBankIds, accountNumbers, accountBankIndexes, banks,
+                                 contractIndex, accountIndex, bankIndex);
+    }
+
+    /**
+     * @return the number of contracts a batch over the store collects and prints, i.e. those whose account exists
+     */
+    public static long contractsWithBankAccounts(ContractStore store) {
+        long count = 0;
+        for (int c = 0; c < store.contractCount(); c++) {
+            if (store.accountIndexOfContract(c) != ContractStore.NOT_FOUND) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Serves generated data through the object model, so that {@link InkassoBatch#runInkassoBatch()} can run on it.
+     * The objects are created on demand and not kept, which is only sensible up to a few million contracts.
+     */
+    public static ProviderCaches providerCaches(ContractStore store) {
+        return new ProviderCaches(
+                new ProviderCache<>("banks", () -> objectList(store.bankCount(), store::bank),
+                                    id -> store.bankById(id), Bank::getId, ProviderCache.DEFAULT_MAXIMUM_SIZE),
+                new ProviderCache<>("accounts", () -> objectList(store.accountCount(), store::bankAccount),
+                                    id -> {
+                                        int a = store.indexOfAccount(id);
+                                        return a == ContractStore.NOT_FOUND ? null : store.bankAccount(a);
+                                    }, BankAccount::getId, ProviderCache.DEFAULT_MAXIMUM_SIZE),
+                new ProviderCache<>("contracts", () -> objectList(store.contractCount(), c -> contract(store, c)),
+                                    id -> {
+                                        int c = store.indexOfContract(id);
+                                        return c == ContractStore.NOT_FOUND ? null : contract(store, c);
+                                    }, Contract::getId, ProviderCache.DEFAULT_MAXIMUM_SIZE));
+    }
+
+    private static Contract contract(ContractStore store, int contractIndex) {
+        int accountId = store.accountIdOfContract(contractIndex);
+        return new Contract(store.contractId(contractIndex), accountId == ContractStore.NOT_FOUND ? null : accountId,
+                            store.policyHolderName(contractIndex));
+    }
+
+    private static <V> List<V> objectList(int size, IntFunction<V> element) {
+        return new AbstractList<V>() {
+            @Override
+            public V get(int index) {
+                return element.apply(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Draws account indexes by inverting the continuous approximation of a Zipf distribution's CDF, O(1) per draw
+     * and without a table per account. Index 0 is the hottest account.
+     */
+    private static final class AccountPicker {
+
+        private final int accountCount;
+        private final double skew;
+        private final double base;
+
+        private AccountPicker(int accountCount, double skew) {
+            this.accountCount = accountCount;
+            this.skew = skew;
+            this.base = skew == 1 ? Math.log(accountCount + 1) : Math.pow(accountCount + 1, 1 - skew) - 1;
+        }
+
+        private int pick(SplittableRandom random) {
+            if (skew == 0) {
+                return random.nextInt(accountCount);
+            }
+            double u = random.nextDouble();
+            double rank = skew == 1 ? Math.exp(base * u) : Math.pow(base * u + 1, 1 / (1 - skew));
+            return Math.min(accountCount - 1, (int) rank - 1);
+        }
+    }
+}